@@ -0,0 +1,63 @@
+#!/usr/bin/env python3
+"""Compare two JSON result files written by JMH.
+
+Usage: compare.py [--threshold=PERCENT] BASELINE RESULTS
+
+Prints the score of every benchmark found in both files, marking with
+'SLOWER' those whose score in RESULTS is worse than in BASELINE by more
+than PERCENT percent (default 10).  Exits with status 1 if any is.
+Scores are compared by the benchmark's mode: for throughput higher is
+better, for the time modes lower is.
+"""
+
+import json
+import sys
+from getopt import getopt, GetoptError
+
+def load(name):
+    """Return a dictionary from the benchmark names and parameters in the
+    JMH results file NAME to their (score, unit, mode)."""
+    with open(name) as inp:
+        runs = json.load(inp)
+    result = {}
+    for run in runs:
+        params = run.get("params", {})
+        key = run["benchmark"] + "".join(
+            " {}={}".format(k, params[k]) for k in sorted(params))
+        metric = run["primaryMetric"]
+        result[key] = (metric["score"], metric["scoreUnit"], run["mode"])
+    return result
+
+def main():
+    try:
+        opts, args = getopt(sys.argv[1:], "", ["threshold="])
+    except GetoptError:
+        print(__doc__, file=sys.stderr)
+        return 2
+    if len(args) != 2:
+        print(__doc__, file=sys.stderr)
+        return 2
+    threshold = 10.0
+    for opt, val in opts:
+        if opt == "--threshold":
+            threshold = float(val)
+    base, new = load(args[0]), load(args[1])
+    slower = 0
+    for key in sorted(set(base) & set(new)):
+        old_score, unit, mode = base[key]
+        new_score = new[key][0]
+        if old_score == 0:
+            continue
+        change = 100.0 * (new_score - old_score) / old_score
+        if mode == "thrpt":
+            change = -change
+        flag = ""
+        if change > threshold:
+            flag = "  SLOWER"
+            slower += 1
+        print("{:70s} {:12.3f} -> {:12.3f} {:8s} {:+7.1f}%{}".format(
+            key, old_score, new_score, unit, change, flag))
+    return 1 if slower else 0
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,70 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Diff and MyersDiff on two versions of a text, the second
+ *  having one line in a hundred changed.  Diff needs a table of LINES
+ *  squared ints, so the sizes stay small enough for it.
+ *  @author Kelvin Mo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiffBench {
+
+    /** Number of lines in each version. */
+    @Param({"500", "2000", "5000"})
+    public int lines;
+
+    /** The first version. */
+    private List<String> before;
+
+    /** The second version. */
+    private List<String> after;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(61);
+        this.before = new ArrayList<>();
+        for (int i = 0; i < lines; i += 1) {
+            this.before.add("line " + random.nextInt(lines) + "\n");
+        }
+        this.after = new ArrayList<>(this.before);
+        for (int i = 0; i < lines / 100 + 1; i += 1) {
+            this.after.set(random.nextInt(lines), "changed " + i + "\n");
+        }
+    }
+
+    @Benchmark
+    public int[] lcs() {
+        Diff diff = new Diff();
+        diff.setSequences(this.before, this.after);
+        return diff.diffs();
+    }
+
+    @Benchmark
+    public int[] myers() {
+        Diff diff = new MyersDiff();
+        diff.setSequences(this.before, this.after);
+        return diff.diffs();
+    }
+
+}
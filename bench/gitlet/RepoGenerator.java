@@ -0,0 +1,203 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** A builder of synthetic repositories for the benchmarks.  A repository
+ *  has a given number of files spread over subdirectories of at most
+ *  DIR_SIZE files, a history of commits on master that each change a
+ *  hundredth of the files, and branches that each add two commits of
+ *  their own on top of master.  File contents are lines of random words,
+ *  so that diffs and merges see realistic text.
+ *
+ *  Repository fixes its directories from the property user.dir when it is
+ *  first loaded, so create must run before any use of Repository, and at
+ *  most once in each JVM.  The benchmarks therefore always run forked.
+ *  @author Kelvin Mo
+ */
+class RepoGenerator {
+
+    /** Largest number of files in one generated directory. */
+    static final int DIR_SIZE = 100;
+
+    /** Average number of bytes in one generated line. */
+    static final int LINE_BYTES = 40;
+
+    /** The directory holding the repository. */
+    private final File root;
+
+    /** The paths of the generated files, relative to ROOT. */
+    private final ArrayList<String> paths = new ArrayList<>();
+
+    /** Distribution of file sizes: "fixed" or "lognormal". */
+    private final String sizes;
+
+    /** Source of file contents and of the files changed. */
+    private final Random random = new Random(61);
+
+    /** The repository under construction. */
+    private Repository repo;
+
+    /** Number of edits made so far, which makes every edit unique. */
+    private int edits;
+
+    /** A generator of a repository in ROOT whose files have sizes drawn
+     *  from the distribution SIZES. */
+    private RepoGenerator(File root, String sizes) {
+        this.root = root;
+        this.sizes = sizes;
+    }
+
+    /** Return a generator holding a new repository in a temporary
+     *  directory, with FILES files, COMMITS commits on master besides the
+     *  initial one, and BRANCHES other branches, whose file sizes are
+     *  drawn from the distribution SIZES. */
+    static RepoGenerator create(int files, int commits, int branches,
+                                String sizes) throws IOException {
+        File root = Files.createTempDirectory("gitlet-bench").toFile();
+        System.setProperty("user.dir", root.getPath());
+        if (!Repository.CWD.equals(root)) {
+            throw new IllegalStateException("Repository was loaded before "
+                                            + "the benchmark repository was "
+                                            + "created");
+        }
+        RepoGenerator result = new RepoGenerator(root, sizes);
+        PrintStream out = quiet();
+        try {
+            result.build(files, commits, branches);
+        } finally {
+            System.setOut(out);
+        }
+        return result;
+    }
+
+    /** Make the repository as described for create. */
+    private void build(int files, int commits, int branches) {
+        this.repo = new Repository();
+        this.repo.init();
+        this.repo.finish();
+        this.repo = new Repository();
+        for (int i = 0; i < files; i += 1) {
+            String path = "d" + (i / DIR_SIZE) + "/f" + i + ".txt";
+            this.paths.add(path);
+            write(path, text(size()));
+            this.repo.add(path);
+            this.repo.finish();
+        }
+        this.repo.commit("files");
+        this.repo.finish();
+        for (int i = 0; i < commits; i += 1) {
+            commitEdits("commit " + i);
+        }
+        for (int k = 0; k < branches; k += 1) {
+            String name = "b" + k;
+            this.repo.branch(name);
+            this.repo.finish();
+            this.repo.checkout(new String[] {"checkout", name});
+            this.repo.finish();
+            commitEdits(name + " first");
+            commitEdits(name + " second");
+            this.repo.checkout(new String[] {"checkout", "master"});
+            this.repo.finish();
+        }
+    }
+
+    /** Edit a hundredth of the files, at least one, and commit them with
+     *  MESSAGE. */
+    private void commitEdits(String message) {
+        for (int j = 0; j < Math.max(1, this.paths.size() / 100); j += 1) {
+            this.repo.add(edit());
+            this.repo.finish();
+        }
+        this.repo.commit(message);
+        this.repo.finish();
+    }
+
+    /** Return the repository. */
+    Repository repository() {
+        return this.repo;
+    }
+
+    /** Return the paths of the files, relative to the repository. */
+    List<String> paths() {
+        return this.paths;
+    }
+
+    /** Change one line of a random file and return its path. */
+    String edit() {
+        String path = this.paths.get(this.random.nextInt(this.paths.size()));
+        File file = Utils.join(this.root, path);
+        String contents = Utils.readContentsAsString(file);
+        int at = contents.indexOf('\n', this.random.nextInt(contents.length()));
+        this.edits += 1;
+        String line = "edit " + this.edits + "\n";
+        contents = at < 0 ? contents + line
+            : contents.substring(0, at + 1) + line + contents.substring(at + 1);
+        write(path, contents);
+        return path;
+    }
+
+    /** Return a file size drawn from the distribution of this generator:
+     *  1 KiB for "fixed", or a log-normal size with a median of 2 KiB,
+     *  capped at 1 MiB, for "lognormal". */
+    private int size() {
+        switch (this.sizes) {
+        case "fixed":
+            return 1 << 10;
+        case "lognormal":
+            double size = Math.exp(Math.log(2 << 10)
+                                   + 1.5 * this.random.nextGaussian());
+            return (int) Math.min(size, 1 << 20);
+        default:
+            throw new IllegalArgumentException("unknown size distribution "
+                                               + this.sizes);
+        }
+    }
+
+    /** Return random lines of words totalling about SIZE bytes. */
+    String text(int size) {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < size) {
+            int words = 1 + this.random.nextInt(2 * LINE_BYTES / 6);
+            for (int w = 0; w < words; w += 1) {
+                result.append(w == 0 ? "" : " ");
+                result.append(Integer.toString(this.random.nextInt(1 << 20), 36));
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Write CONTENTS to the file at PATH, relative to the repository. */
+    private void write(String path, String contents) {
+        File file = Utils.join(this.root, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+    /** Delete the repository and its directory. */
+    void delete() throws IOException {
+        try (Stream<Path> all = Files.walk(this.root.toPath())) {
+            all.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+
+    /** Send standard output nowhere, since the commands print their
+     *  results, and return the previous standard output. */
+    static PrintStream quiet() {
+        PrintStream result = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return result;
+    }
+
+}
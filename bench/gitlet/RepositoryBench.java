@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the commands on synthetic repositories.  Each command
+ *  starts with Repository.refresh, as it would in the daemon, so that it
+ *  sees no state left by the previous invocation besides what is on disk.
+ *  @author Kelvin Mo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RepositoryBench {
+
+    /** Number of files. */
+    @Param({"100", "1000", "10000"})
+    public int files;
+
+    /** Number of commits on master. */
+    @Param({"100"})
+    public int commits;
+
+    /** Number of branches besides master. */
+    @Param({"4"})
+    public int branches;
+
+    /** Distribution of file sizes. */
+    @Param({"fixed", "lognormal"})
+    public String sizes;
+
+    /** The generated repository. */
+    private RepoGenerator generator;
+
+    /** The repository the commands run in. */
+    private Repository repo;
+
+    /** Standard output before it was silenced. */
+    private PrintStream out;
+
+    /** Number of checkouts so far. */
+    private int checkouts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.generator = RepoGenerator.create(files, commits, branches, sizes);
+        this.repo = this.generator.repository();
+        this.out = RepoGenerator.quiet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(this.out);
+        this.generator.delete();
+    }
+
+    @Benchmark
+    public void add() {
+        this.repo.refresh();
+        this.repo.add(this.generator.edit());
+        this.repo.finish();
+    }
+
+    @Benchmark
+    public void commit() {
+        this.repo.refresh();
+        this.repo.add(this.generator.edit());
+        this.repo.finish();
+        this.repo.refresh();
+        this.repo.commit("benchmark");
+        this.repo.finish();
+    }
+
+    @Benchmark
+    public void status() {
+        this.repo.refresh();
+        this.repo.status();
+    }
+
+    @Benchmark
+    public void log() {
+        this.repo.refresh();
+        this.repo.log(new String[] {"log"});
+    }
+
+    @Benchmark
+    public void checkout() {
+        this.repo.refresh();
+        this.checkouts += 1;
+        String target = this.checkouts % 2 == 1 ? "b0" : "master";
+        this.repo.checkout(new String[] {"checkout", target});
+        this.repo.finish();
+    }
+
+    @Benchmark
+    public void mergeBase() {
+        this.repo.refresh();
+        this.repo.merge_base("master", "b" + (branches - 1));
+    }
+
+}
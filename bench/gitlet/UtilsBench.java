@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of hashing and of reading serialized objects.
+ *  @author Kelvin Mo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UtilsBench {
+
+    /** Size of the data hashed, and about that of the object read. */
+    @Param({"1024", "65536", "1048576"})
+    public int bytes;
+
+    /** The data hashed. */
+    private byte[] data;
+
+    /** A file holding DATA. */
+    private File file;
+
+    /** A file holding a serialized treemap of about BYTES bytes. */
+    private File object;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.data = new byte[bytes];
+        new Random(61).nextBytes(this.data);
+        this.file = File.createTempFile("gitlet-bench", ".bin");
+        Utils.writeContents(this.file, this.data);
+        TreeMap<String, String> map = new TreeMap<>();
+        for (int i = 0; map.size() * 64 < bytes; i += 1) {
+            map.put("d/f" + i + ".txt", Utils.sha1("blob " + i));
+        }
+        this.object = File.createTempFile("gitlet-bench", ".ser");
+        Utils.writeObject(this.object, map);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+        this.object.delete();
+    }
+
+    @Benchmark
+    public String sha1Bytes() {
+        return Utils.sha1(this.data);
+    }
+
+    @Benchmark
+    public String sha1File() {
+        return Utils.sha1(this.file);
+    }
+
+    @Benchmark
+    public TreeMap<?, ?> readObject() {
+        return Utils.readObject(this.object, TreeMap.class);
+    }
+
+}
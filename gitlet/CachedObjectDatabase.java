@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+
+/** An ObjectDatabase over three ObjectStores that keeps recently used
+ *  commits, trees and small blobs decoded in LRU caches bounded by an
+ *  estimate of their size in memory.  Half the budget goes to blobs and a
+ *  quarter each to commits and trees.  Blobs larger than a separate limit
+ *  are never cached, and are streamed rather than read whole when copied
+ *  out.
+ *
+ *  The budget is taken from the environment variable GITLET_CACHE_BYTES
+ *  and the blob limit from GITLET_CACHE_BLOB_BYTES, when set.
+ *  @author Kelvin Mo
+ */
+class CachedObjectDatabase implements ObjectDatabase {
+
+    /** Default total size of the caches, in bytes. */
+    static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    /** Default size of the largest blob cached, in bytes. */
+    static final long DEFAULT_BLOB_BYTES = 256L << 10;
+
+    /** Estimated bytes of memory used by an object besides its data. */
+    private static final int OVERHEAD = 64;
+
+    /** Store of blobs. */
+    private final ObjectStore blobs;
+
+    /** Store of commits. */
+    private final ObjectStore commits;
+
+    /** Store of trees. */
+    private final ObjectStore trees;
+
+    /** Recently used commits. */
+    private final LruCache<String, Commit> commitCache;
+
+    /** Recently used trees. */
+    private final LruCache<String, Tree> treeCache;
+
+    /** Recently used small blobs. */
+    private final LruCache<String, byte[]> blobCache;
+
+    /** Size of the largest blob cached. */
+    private final long maxBlob;
+
+    /** A database over BLOBS, COMMITS and TREES with the cache limits
+     *  given by the environment. */
+    CachedObjectDatabase(ObjectStore blobs, ObjectStore commits,
+                         ObjectStore trees) {
+        this(blobs, commits, trees,
+             limit("GITLET_CACHE_BYTES", DEFAULT_CACHE_BYTES),
+             limit("GITLET_CACHE_BLOB_BYTES", DEFAULT_BLOB_BYTES));
+    }
+
+    /** A database over BLOBS, COMMITS and TREES whose caches take at most
+     *  CAPACITY bytes and hold no blob larger than MAXBLOB bytes. */
+    CachedObjectDatabase(ObjectStore blobs, ObjectStore commits,
+                         ObjectStore trees, long capacity, long maxBlob) {
+        this.blobs = blobs;
+        this.commits = commits;
+        this.trees = trees;
+        this.commitCache = new LruCache<>(capacity / 4);
+        this.treeCache = new LruCache<>(capacity / 4);
+        this.blobCache = new LruCache<>(capacity / 2);
+        this.maxBlob = maxBlob;
+    }
+
+    /** Return the value of the environment variable NAME as a number of
+     *  bytes, or DEFAULTVALUE if it is unset or malformed. */
+    private static long limit(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException excp) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public Commit readCommit(String hash) {
+        Commit result = this.commitCache.get(hash);
+        if (result == null) {
+            byte[] encoded = this.commits.read(hash);
+            result = new Commit(encoded);
+            this.commitCache.put(hash, result, encoded.length + OVERHEAD);
+        }
+        return result;
+    }
+
+    @Override
+    public void writeCommit(Commit commit) {
+        byte[] encoded = commit.encode();
+        this.commits.put(commit.getHash(), encoded);
+        this.commitCache.put(commit.getHash(), commit, encoded.length + OVERHEAD);
+    }
+
+    @Override
+    public boolean hasCommit(String hash) {
+        return this.commitCache.get(hash) != null || this.commits.exists(hash);
+    }
+
+    @Override
+    public List<String> listCommits() {
+        return this.commits.list();
+    }
+
+    @Override
+    public boolean hasTree(String hash) {
+        return this.treeCache.get(hash) != null || this.trees.exists(hash);
+    }
+
+    @Override
+    public Tree readTree(String hash) {
+        Tree result = this.treeCache.get(hash);
+        if (result == null) {
+            byte[] encoded = this.trees.read(hash);
+            result = new Tree(encoded);
+            this.treeCache.put(hash, result, 2 * encoded.length + OVERHEAD);
+        }
+        return result;
+    }
+
+    @Override
+    public String writeTree(Tree tree) {
+        byte[] encoded = tree.encode();
+        String hash = Utils.sha1(encoded);
+        this.trees.put(hash, encoded);
+        this.treeCache.put(hash, tree, 2 * encoded.length + OVERHEAD);
+        return hash;
+    }
+
+    @Override
+    public boolean hasBlob(String hash) {
+        return this.blobs.exists(hash);
+    }
+
+    @Override
+    public byte[] readBlob(String hash) {
+        byte[] result = this.blobCache.get(hash);
+        if (result == null) {
+            result = this.blobs.read(hash);
+            if (result.length <= this.maxBlob) {
+                this.blobCache.put(hash, result, result.length + OVERHEAD);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void copyBlob(String hash, File dest) {
+        byte[] cached = this.blobCache.get(hash);
+        if (cached != null) {
+            Utils.writeContents(dest, cached);
+        } else {
+            this.blobs.copyTo(hash, dest);
+        }
+    }
+
+    @Override
+    public void writeBlob(String hash, File source) {
+        this.blobs.put(hash, source);
+    }
+
+    @Override
+    public void recordCaches() {
+        record("commits", this.commitCache);
+        record("trees", this.treeCache);
+        record("blobs", this.blobCache);
+    }
+
+    /** Pass the counts of CACHE, which holds objects of the given KIND, to
+     *  Metrics.cache and reset them. */
+    private static void record(String kind, LruCache<?, ?> cache) {
+        Metrics.cache(kind, cache.hits(), cache.misses(), cache.size(),
+                      cache.weight());
+        cache.resetCounts();
+    }
+
+}
@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Splits a stream into content-defined chunks in the manner of FastCDC.
+ *  A gear hash is rolled over the bytes after the minimum chunk size, and
+ *  a chunk ends where its top bits are all zero.  Up to the average size
+ *  more bits must be zero than after it, which keeps chunk sizes close to
+ *  the average.  Since a boundary depends only on the last 64 bytes
+ *  before it, an insertion or deletion changes only the chunks around it,
+ *  and the chunks after it are found again unchanged.
+ *  @author Kelvin Mo
+ */
+class Chunker {
+
+    /** Smallest size of a chunk other than the last. */
+    static final int MIN_SIZE = 1 << 18;
+
+    /** Size chunks are aimed at. */
+    static final int AVG_SIZE = 1 << 20;
+
+    /** Largest size of a chunk. */
+    static final int MAX_SIZE = 1 << 22;
+
+    /** Bits of the hash tested before the average size is reached. */
+    private static final long MASK_SMALL = topBits(22);
+
+    /** Bits of the hash tested after the average size is reached. */
+    private static final long MASK_LARGE = topBits(18);
+
+    /** Random value added to the hash for each byte value. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** The stream being split. */
+    private final InputStream in;
+
+    /** Bytes read from IN and not yet returned. */
+    private final byte[] buffer = new byte[MAX_SIZE];
+
+    /** Number of bytes held in BUFFER. */
+    private int length;
+
+    /** True once IN is exhausted. */
+    private boolean done;
+
+    /** A chunker splitting the contents of IN. */
+    Chunker(InputStream in) {
+        this.in = in;
+    }
+
+    /** Return the next chunk, or null at the end of the stream. */
+    byte[] next() throws IOException {
+        if (!this.done && this.length < MAX_SIZE) {
+            int n = this.in.readNBytes(this.buffer, this.length,
+                                       MAX_SIZE - this.length);
+            this.length += n;
+            this.done = this.length < MAX_SIZE;
+        }
+        if (this.length == 0) {
+            return null;
+        }
+        int cut = cut(this.buffer, this.length);
+        byte[] result = Arrays.copyOf(this.buffer, cut);
+        System.arraycopy(this.buffer, cut, this.buffer, 0, this.length - cut);
+        this.length -= cut;
+        return result;
+    }
+
+    /** Return the length of the chunk starting DATA, whose first N bytes
+     *  are all that is left of the stream or at least MAX_SIZE. */
+    static int cut(byte[] data, int n) {
+        if (n <= MIN_SIZE) {
+            return n;
+        }
+        n = Math.min(n, MAX_SIZE);
+        int normal = Math.min(n, AVG_SIZE);
+        long hash = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & MASK_SMALL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & MASK_LARGE) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return a mask of the top BITS bits of a long. */
+    private static long topBits(int bits) {
+        return -1L << (Long.SIZE - bits);
+    }
+
+}
@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Chunker.
+ *  @author Kelvin Mo
+ */
+public class ChunkerTest {
+
+    /** Return the chunks of DATA. */
+    private static List<byte[]> split(byte[] data) throws IOException {
+        Chunker chunker = new Chunker(new ByteArrayInputStream(data));
+        ArrayList<byte[]> result = new ArrayList<>();
+        byte[] chunk;
+        while ((chunk = chunker.next()) != null) {
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    @Test
+    public void chunksRebuildInput() throws IOException {
+        byte[] data = new byte[12 << 20];
+        new Random(1).nextBytes(data);
+        List<byte[]> chunks = split(data);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); i += 1) {
+            byte[] chunk = chunks.get(i);
+            assertTrue(chunk.length <= Chunker.MAX_SIZE);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.length >= Chunker.MIN_SIZE);
+            }
+            joined.write(chunk);
+        }
+        assertArrayEquals(data, joined.toByteArray());
+        assertEquals(0, split(new byte[0]).size());
+    }
+
+    @Test
+    public void insertionChangesFewChunks() throws IOException {
+        byte[] data = new byte[16 << 20];
+        new Random(2).nextBytes(data);
+        int at = 7 << 20;
+        byte[] edited = new byte[data.length + 100];
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(data, at, edited, at + 100, data.length - at);
+        HashSet<String> before = new HashSet<>();
+        for (byte[] chunk : split(data)) {
+            before.add(Utils.sha1(chunk));
+        }
+        int changed = 0;
+        for (byte[] chunk : split(edited)) {
+            if (!before.contains(Utils.sha1(chunk))) {
+                changed += 1;
+            }
+        }
+        assertTrue(changed >= 1 && changed <= 2);
+    }
+
+}
@@ -1,63 +1,149 @@
 package gitlet;
 
-import java.io.Serializable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.TreeMap;
+import java.util.List;
 import java.util.Date;
 
-public class Commit implements Serializable {
-    /** Hash code of the commit object (UID). */
+/** A commit, stored in a compact binary encoding: a format version byte,
+ *  the timestamp in milliseconds, the message, the binary hashes of the
+ *  parents, and the binary hash of the root Tree of its files.  Only the
+ *  trees are ever read to learn which files a commit holds, so history
+ *  walks never touch them.
+ *  @author Kelvin Mo
+ */
+public class Commit {
+    /** Version of the encoding written by this class. */
+    static final int FORMAT_VERSION = 2;
+
+    /** Hash code of the commit object (UID), or null if not yet computed. */
     private String hash;
 
-    /** Hash code of the parent of the commit object. */
-    private String parentHash;
-
-    /** Timestamp of the commit object being created. */
-    private String timestamp;
+    /** Timestamp of the commit object being created, in milliseconds. */
+    private long time;
 
     /** Commit message being passed in. */
     private String message;
 
-    /** A treemap to save both the filenames and its blob hashcode. */
-    private TreeMap<String, String> mapping;
+    /** Hash of the root tree of the files in this commit. */
+    private String tree;
 
     /** An arraylst to record all the parents of one commit. */
     private ArrayList<String> allParents;
 
-    public Commit(String note, String parent, TreeMap<String, String> blob) {
-        SimpleDateFormat ts = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
-        this.timestamp = ts.format(new Date());
+    public Commit(String note, String parent, String tree) {
+        this(note, System.currentTimeMillis(),
+             parent == null ? new ArrayList<String>() : List.of(parent), tree);
+    }
+
+    /** A commit with message NOTE made at TIME, in milliseconds, with the
+     *  given PARENTS and root TREE. */
+    Commit(String note, long time, List<String> parents, String tree) {
+        this.time = time;
         this.message = note;
-        this.mapping = blob;
-        this.parentHash = parent;
-        this.hash = getHash();
-        this.allParents = new ArrayList<String>();
-        this.allParents.add(this.parentHash);
+        this.tree = tree;
+        this.allParents = new ArrayList<String>(parents);
+    }
+
+    /** A commit decoded from ENCODED, as produced by encode(). */
+    public Commit(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] != FORMAT_VERSION) {
+            throw Utils.error("Unsupported commit format; run 'migrate' first.");
+        }
+        long start = Metrics.start();
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(encoded));
+            in.readByte();
+            this.time = in.readLong();
+            this.message = readString(in);
+            int numParents = in.readUnsignedByte();
+            this.allParents = new ArrayList<String>(numParents);
+            for (int i = 0; i < numParents; i += 1) {
+                this.allParents.add(Pack.toHex(in.readNBytes(Pack.HASH_BYTES)));
+            }
+            this.tree = Pack.toHex(in.readNBytes(Pack.HASH_BYTES));
+            this.hash = Utils.sha1(encoded);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Metrics.record(Metrics.Op.COMMIT_DECODE, start, encoded.length);
+    }
+
+    /** Return the encoding of this commit. */
+    public byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(this.time);
+            writeString(out, this.message);
+            out.writeByte(this.allParents.size());
+            for (String parent : this.allParents) {
+                out.write(Pack.toBytes(parent));
+            }
+            out.write(Pack.toBytes(this.tree));
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write S to OUT as a length-prefixed UTF-8 string. */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /** Return a string written by writeString from IN. */
+    static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
     }
 
     public String getHash() {
-        return Utils.sha1(Utils.serialize(this));
+        if (this.hash == null) {
+            this.hash = Utils.sha1(encode());
+        }
+        return this.hash;
     }
 
     public String getParentHash() {
-        return this.parentHash;
+        return this.allParents.isEmpty() ? null : this.allParents.get(0);
     }
 
     public String getTimestamp() {
-        return this.timestamp;
+        return formatTime(this.time);
+    }
+
+    /** Return TIME, in milliseconds, formatted as in log output. */
+    static String formatTime(long time) {
+        SimpleDateFormat ts = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
+        return ts.format(new Date(time));
+    }
+
+    public long getTime() {
+        return this.time;
     }
 
     public String getMessage() {
         return this.message;
     }
 
-    public TreeMap<String, String> getMapping() {
-        return this.mapping;
+    public String getTree() {
+        return this.tree;
     }
 
     public void addParent(String parentHash) {
         this.allParents.add(parentHash);
+        this.hash = null;
     }
 
     public ArrayList<String> getAllParents() {
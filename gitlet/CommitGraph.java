@@ -0,0 +1,347 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/** A dense index of the commit history, kept in one file so that ancestry
+ *  questions can be answered without reading any commit.  Each commit has
+ *  a fixed-size record: its 20-byte hash, its time in milliseconds, its
+ *  generation number (one more than the largest generation among its
+ *  parents, with root commits at 1), and the record numbers of up to two
+ *  parents, or NONE.  Parents always come before their children, so new
+ *  commits are simply appended.
+ *
+ *  A record's number is its position in the file.  Records may be
+ *  appended by ensure on a loaded graph or by the static append, so a
+ *  loaded graph first reads whatever was appended since it last read the
+ *  file before it adds records of its own.
+ *  @author Kelvin Mo
+ */
+class CommitGraph {
+
+    /** Magic number starting the file. */
+    static final int MAGIC = 0x474c4347;
+
+    /** Version of the file format written by this class. */
+    static final int VERSION = 1;
+
+    /** Record number denoting a missing parent. */
+    static final int NONE = -1;
+
+    /** Number of bytes in the file header. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Number of bytes in one record. */
+    private static final int RECORD_SIZE = Pack.HASH_BYTES + 8 + 4 + 4 + 4;
+
+    /** The file holding this graph. */
+    private final File file;
+
+    /** Number of records. */
+    private int count;
+
+    /** Hashes of the commits, by record number. */
+    private String[] hashes;
+
+    /** Commit times, by record number. */
+    private long[] times;
+
+    /** Generation numbers, by record number. */
+    private int[] generations;
+
+    /** First and second parents, by record number. */
+    private int[] parents1, parents2;
+
+    /** A map from each commit hash to its record number. */
+    private HashMap<String, Integer> positions;
+
+    /** The graph stored in FILE, which need not exist yet. */
+    CommitGraph(File file) {
+        this.file = file;
+        clear();
+        load();
+    }
+
+    /** Empty this graph in memory. */
+    private void clear() {
+        this.count = 0;
+        this.positions = new HashMap<>();
+        this.hashes = new String[16];
+        this.times = new long[16];
+        this.generations = new int[16];
+        this.parents1 = new int[16];
+        this.parents2 = new int[16];
+    }
+
+    /** Read the records of FILE that are not yet in memory.  If the file
+     *  holds fewer records than memory, it was replaced, and it is read
+     *  again from the start. */
+    private void load() {
+        if (!this.file.isFile()) {
+            if (this.count > 0) {
+                clear();
+            }
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC
+                || raf.readInt() != VERSION) {
+                return;
+            }
+            int n = (int) ((raf.length() - HEADER_SIZE) / RECORD_SIZE);
+            if (n < this.count) {
+                clear();
+            }
+            if (n == this.count) {
+                return;
+            }
+            byte[] records = new byte[(n - this.count) * RECORD_SIZE];
+            raf.seek(HEADER_SIZE + (long) this.count * RECORD_SIZE);
+            raf.readFully(records);
+            ByteBuffer data = ByteBuffer.wrap(records);
+            byte[] key = new byte[Pack.HASH_BYTES];
+            while (data.hasRemaining()) {
+                data.get(key);
+                long time = data.getLong();
+                int generation = data.getInt();
+                insert(Pack.toHex(key), time, generation, data.getInt(),
+                       data.getInt());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Add a record in memory for commit HASH with the given TIME,
+     *  GENERATION and parents P1 and P2. */
+    private void insert(String hash, long time, int generation, int p1,
+                        int p2) {
+        if (this.count == this.hashes.length) {
+            int size = 2 * this.count;
+            this.hashes = Arrays.copyOf(this.hashes, size);
+            this.times = Arrays.copyOf(this.times, size);
+            this.generations = Arrays.copyOf(this.generations, size);
+            this.parents1 = Arrays.copyOf(this.parents1, size);
+            this.parents2 = Arrays.copyOf(this.parents2, size);
+        }
+        this.hashes[this.count] = hash;
+        this.times[this.count] = time;
+        this.generations[this.count] = generation;
+        this.parents1[this.count] = p1;
+        this.parents2[this.count] = p2;
+        this.positions.put(hash, this.count);
+        this.count += 1;
+    }
+
+    /** Return true iff commit HASH is in this graph. */
+    boolean contains(String hash) {
+        return this.positions.containsKey(hash);
+    }
+
+    /** Return the number of commits in this graph. */
+    int size() {
+        return this.count;
+    }
+
+    /** Return the generation number of commit HASH. */
+    int generation(String hash) {
+        return this.generations[position(hash)];
+    }
+
+    /** Return the time of commit HASH, in milliseconds. */
+    long time(String hash) {
+        return this.times[position(hash)];
+    }
+
+    /** Return the parents of commit HASH, first parent first. */
+    List<String> parents(String hash) {
+        int i = position(hash);
+        ArrayList<String> result = new ArrayList<>(2);
+        if (this.parents1[i] != NONE) {
+            result.add(this.hashes[this.parents1[i]]);
+        }
+        if (this.parents2[i] != NONE) {
+            result.add(this.hashes[this.parents2[i]]);
+        }
+        return result;
+    }
+
+    /** Return the record number of commit HASH. */
+    private int position(String hash) {
+        Integer i = this.positions.get(hash);
+        if (i == null) {
+            throw Utils.error("Commit %s is not in the commit graph.", hash);
+        }
+        return i;
+    }
+
+    /** Make sure commit HASH and all its ancestors are in this graph,
+     *  reading any that are missing with READER and appending them to the
+     *  file.  Records appended to the file since it was last read are
+     *  read first, so that new records are numbered after them. */
+    void ensure(String hash, Function<String, Commit> reader) {
+        if (contains(hash)) {
+            return;
+        }
+        load();
+        if (contains(hash)) {
+            return;
+        }
+        ArrayList<Commit> added = new ArrayList<>();
+        ArrayDeque<Commit> todo = new ArrayDeque<>();
+        HashMap<String, Commit> pending = new HashMap<>();
+        todo.push(reader.apply(hash));
+        while (!todo.isEmpty()) {
+            Commit c = todo.peek();
+            boolean ready = true;
+            for (String parent : c.getAllParents()) {
+                if (!contains(parent)) {
+                    ready = false;
+                    todo.push(pending.computeIfAbsent(parent, reader));
+                }
+            }
+            if (ready) {
+                todo.pop();
+                if (!contains(c.getHash())) {
+                    add(c);
+                    added.add(c);
+                }
+            }
+        }
+        append(added);
+    }
+
+    /** Add a record in memory for C, whose parents must already be in this
+     *  graph. */
+    private void add(Commit c) {
+        List<String> ps = c.getAllParents();
+        if (ps.size() > 2) {
+            throw Utils.error("Commit %s has more than two parents.", c.getHash());
+        }
+        int p1 = ps.size() > 0 ? position(ps.get(0)) : NONE;
+        int p2 = ps.size() > 1 ? position(ps.get(1)) : NONE;
+        int generation = 1;
+        for (String parent : ps) {
+            generation = Math.max(generation, generation(parent) + 1);
+        }
+        insert(c.getHash(), c.getTime(), generation, p1, p2);
+    }
+
+    /** Write the records of COMMITS, already added in memory, to the file
+     *  at their record numbers, over any partial record that an
+     *  interrupted append left at the end, writing the header first if the
+     *  file is new. */
+    private void append(List<Commit> commits) {
+        if (commits.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes);
+             RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            long start = HEADER_SIZE
+                + (long) position(commits.get(0).getHash()) * RECORD_SIZE;
+            if (raf.length() < HEADER_SIZE) {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+            }
+            for (Commit c : commits) {
+                int i = position(c.getHash());
+                out.write(Pack.toBytes(this.hashes[i]));
+                out.writeLong(this.times[i]);
+                out.writeInt(this.generations[i]);
+                out.writeInt(this.parents1[i]);
+                out.writeInt(this.parents2[i]);
+            }
+            raf.setLength(start + bytes.size());
+            raf.seek(start);
+            raf.write(bytes.toByteArray());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append a record for the new commit C to the graph in FILE without
+     *  loading the whole graph.  The records of C's parents are found by
+     *  scanning back from the end of the file, where they almost always
+     *  are.  If any parent is missing, the file is left alone and the
+     *  record will be added by a later call to ensure. */
+    static void append(File file, Commit c) {
+        if (!file.isFile() || c.getAllParents().size() > 2) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int n = (int) ((raf.length() - HEADER_SIZE) / RECORD_SIZE);
+            List<String> ps = c.getAllParents();
+            int[] found = {NONE, NONE};
+            int[] gens = {0, 0};
+            int missing = ps.size();
+            byte[] key = new byte[Pack.HASH_BYTES];
+            for (int i = n - 1; i >= 0 && missing > 0; i -= 1) {
+                raf.seek(HEADER_SIZE + (long) i * RECORD_SIZE);
+                raf.readFully(key);
+                String hash = Pack.toHex(key);
+                if (hash.equals(c.getHash())) {
+                    return;
+                }
+                for (int k = 0; k < ps.size(); k += 1) {
+                    if (found[k] == NONE && ps.get(k).equals(hash)) {
+                        raf.readLong();
+                        gens[k] = raf.readInt();
+                        found[k] = i;
+                        missing -= 1;
+                    }
+                }
+            }
+            if (missing > 0) {
+                return;
+            }
+            raf.seek(HEADER_SIZE + (long) n * RECORD_SIZE);
+            raf.write(Pack.toBytes(c.getHash()));
+            raf.writeLong(c.getTime());
+            raf.writeInt(Math.max(gens[0], gens[1]) + 1);
+            raf.writeInt(found[0]);
+            raf.writeInt(found[1]);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true iff commit A is an ancestor of commit B, or is B.  Only
+     *  commits whose generation is at least that of A are visited. */
+    boolean isAncestor(String a, String b) {
+        int target = position(a);
+        int minGeneration = this.generations[target];
+        boolean[] seen = new boolean[this.count];
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        todo.push(position(b));
+        while (!todo.isEmpty()) {
+            int i = todo.pop();
+            if (i == target) {
+                return true;
+            }
+            if (seen[i] || this.generations[i] <= minGeneration) {
+                continue;
+            }
+            seen[i] = true;
+            if (this.parents1[i] != NONE) {
+                todo.push(this.parents1[i]);
+            }
+            if (this.parents2[i] != NONE) {
+                todo.push(this.parents2[i]);
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,57 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitGraph.
+ *  @author Kelvin Mo
+ */
+public class CommitGraphTest {
+
+    /** A tree hash shared by all test commits. */
+    private static final String TREE = Utils.sha1("tree");
+
+    /** Commits made so far, by hash. */
+    private final HashMap<String, Commit> made = new HashMap<>();
+
+    /** Return a new commit with MESSAGE and PARENTS, made at TIME. */
+    private Commit commit(String message, long time, String... parents) {
+        Commit c = new Commit(message, time, List.of(parents), TREE);
+        this.made.put(c.getHash(), c);
+        return c;
+    }
+
+    @Test
+    public void ensureAfterStaticAppend() throws IOException {
+        File file = File.createTempFile("commit-graph", null);
+        file.delete();
+        try {
+            Commit root = commit("root", 1, new String[0]);
+            CommitGraph loaded = new CommitGraph(file);
+            loaded.ensure(root.getHash(), this.made::get);
+
+            Commit second = commit("second", 2, root.getHash());
+            CommitGraph.append(file, second);
+            Commit third = commit("third", 3, second.getHash());
+            loaded.ensure(third.getHash(), this.made::get);
+            Commit fourth = commit("fourth", 4, third.getHash());
+            CommitGraph.append(file, fourth);
+
+            CommitGraph fresh = new CommitGraph(file);
+            assertEquals(4, fresh.size());
+            assertEquals(List.of(second.getHash()), fresh.parents(third.getHash()));
+            assertEquals(List.of(third.getHash()), fresh.parents(fourth.getHash()));
+            assertEquals(4, fresh.generation(fourth.getHash()));
+            assertTrue(fresh.isAncestor(root.getHash(), fourth.getHash()));
+            assertFalse(fresh.isAncestor(fourth.getHash(), second.getHash()));
+        } finally {
+            file.delete();
+        }
+    }
+
+}
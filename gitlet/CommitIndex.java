@@ -0,0 +1,181 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/** A persisted index of commit hashes for resolving abbreviated commit
+ *  ids.  The file holds a magic number, a version and the number of
+ *  sorted entries, then that many 20-byte hashes in increasing order, then
+ *  an unsorted tail of hashes appended as commits are made.  Lookups
+ *  binary-search the sorted part, reading only the entries they probe,
+ *  and scan the tail, which is merged into the sorted part once it grows
+ *  past MAX_TAIL entries.
+ *  @author Kelvin Mo
+ */
+class CommitIndex {
+
+    /** Magic number starting the file. */
+    static final int MAGIC = 0x474c4349;
+
+    /** Version of the file format written by this class. */
+    static final int VERSION = 1;
+
+    /** Largest number of unsorted entries kept before they are merged. */
+    static final int MAX_TAIL = 256;
+
+    /** Number of bytes in the file header. */
+    private static final int HEADER_SIZE = 12;
+
+    /** The file holding this index. */
+    private final File file;
+
+    /** The index stored in FILE. */
+    CommitIndex(File file) {
+        this.file = file;
+    }
+
+    /** Return true iff the index file exists and is in a known format. */
+    boolean isValid() {
+        if (!this.file.isFile() || this.file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+            return raf.readInt() == MAGIC && raf.readInt() == VERSION;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Replace the contents of the index with HASHES. */
+    void rebuild(List<String> hashes) {
+        write(new TreeSet<>(hashes));
+    }
+
+    /** Record the new commit HASH, if the index exists, over any partial
+     *  entry that an interrupted add left at the end. */
+    void add(String hash) {
+        if (!isValid()) {
+            return;
+        }
+        int tail;
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            long n = (raf.length() - HEADER_SIZE) / Pack.HASH_BYTES;
+            raf.setLength(HEADER_SIZE + (n + 1) * Pack.HASH_BYTES);
+            raf.seek(HEADER_SIZE + n * Pack.HASH_BYTES);
+            raf.write(Pack.toBytes(hash));
+            raf.seek(8);
+            tail = (int) (n + 1 - raf.readInt());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (tail > MAX_TAIL) {
+            write(new TreeSet<>(all()));
+        }
+    }
+
+    /** Return up to LIMIT commit hashes starting with PREFIX, in order.
+     *  PREFIX must be lowercase hexadecimal; anything else matches
+     *  nothing. */
+    List<String> matches(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<>();
+        if (!prefix.matches("[0-9a-f]{1," + Utils.UID_LENGTH + "}")
+            || !isValid()) {
+            return result;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+            raf.seek(8);
+            int sorted = raf.readInt();
+            int lo = 0, hi = sorted;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (entry(raf, mid).compareTo(prefix) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < sorted && result.size() < limit; i += 1) {
+                String hash = entry(raf, i);
+                if (!hash.startsWith(prefix)) {
+                    break;
+                }
+                result.add(hash);
+            }
+            int total = (int) ((raf.length() - HEADER_SIZE) / Pack.HASH_BYTES);
+            for (int i = sorted; i < total && result.size() < limit; i += 1) {
+                String hash = entry(raf, i);
+                if (hash.startsWith(prefix) && !result.contains(hash)) {
+                    result.add(hash);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** Return the shortest prefix of the commit hash HASH, at least
+     *  MINLENGTH characters long, that no other indexed commit shares. */
+    String abbreviate(String hash, int minLength) {
+        for (int n = minLength; n < hash.length(); n += 1) {
+            if (matches(hash.substring(0, n), 2).size() <= 1) {
+                return hash.substring(0, n);
+            }
+        }
+        return hash;
+    }
+
+    /** Return the hash at entry I of the open index RAF. */
+    private static String entry(RandomAccessFile raf, int i) throws IOException {
+        byte[] key = new byte[Pack.HASH_BYTES];
+        raf.seek(HEADER_SIZE + (long) i * Pack.HASH_BYTES);
+        raf.readFully(key);
+        return Pack.toHex(key);
+    }
+
+    /** Return every hash in the index. */
+    private List<String> all() {
+        byte[] contents = Utils.readContents(this.file);
+        ArrayList<String> result = new ArrayList<>();
+        for (int pos = HEADER_SIZE; pos + Pack.HASH_BYTES <= contents.length;
+             pos += Pack.HASH_BYTES) {
+            result.add(Pack.toHex(Arrays.copyOfRange(contents, pos,
+                                                     pos + Pack.HASH_BYTES)));
+        }
+        return result;
+    }
+
+    /** Write HASHES, in order, as the sorted part of a new index file. */
+    private void write(TreeSet<String> hashes) {
+        File temp = Utils.tempFile(this.file);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(hashes.size());
+            for (String hash : hashes) {
+                out.write(Pack.toBytes(hash));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), this.file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
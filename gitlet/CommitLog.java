@@ -0,0 +1,402 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/** A compact, append-only log of the hash, time and message of every
+ *  commit, with secondary indexes for searching it, kept in one
+ *  directory.  It is extended as commits are made, so listing or
+ *  searching commits never reads the commits themselves.
+ *
+ *  The file "records" holds one record per commit: its 20-byte hash, its
+ *  time in milliseconds and its length-prefixed UTF-8 message.  The file
+ *  "index" holds, for each record in order, its offset in "records" and
+ *  its time, in 16 bytes.  The file "tokens" holds, for each record, its
+ *  number and the distinct lowercase words of its message, and is read
+ *  into an inverted index when a token query needs it.
+ *  @author Kelvin Mo
+ */
+class CommitLog {
+
+    /** One entry of the log. */
+    static class Record {
+        /** Hash of the commit. */
+        private final String hash;
+        /** Time of the commit, in milliseconds. */
+        private final long time;
+        /** Message of the commit. */
+        private final String message;
+
+        /** A record of commit HASH made at TIME with MESSAGE. */
+        Record(String hash, long time, String message) {
+            this.hash = hash;
+            this.time = time;
+            this.message = message;
+        }
+
+        String getHash() {
+            return this.hash;
+        }
+
+        long getTime() {
+            return this.time;
+        }
+
+        String getMessage() {
+            return this.message;
+        }
+    }
+
+    /** A conjunction of conditions on records.  Null or empty fields
+     *  impose no condition. */
+    static class Query {
+        /** The exact message wanted. */
+        private String exact;
+        /** Text the message must contain. */
+        private String substring;
+        /** Words the message must all contain, in lowercase. */
+        private ArrayList<String> tokens = new ArrayList<>();
+        /** Earliest time allowed, in milliseconds. */
+        private long since = Long.MIN_VALUE;
+        /** Latest time allowed, in milliseconds. */
+        private long until = Long.MAX_VALUE;
+
+        /** Require the message to be TEXT. */
+        Query exact(String text) {
+            this.exact = text;
+            return this;
+        }
+
+        /** Require the message to contain TEXT. */
+        Query substring(String text) {
+            this.substring = text;
+            return this;
+        }
+
+        /** Require the message to contain all the words of TEXT. */
+        Query tokens(String text) {
+            this.tokens.addAll(tokenize(text));
+            return this;
+        }
+
+        /** Require the commit to have been made at or after TIME. */
+        Query since(long time) {
+            this.since = time;
+            return this;
+        }
+
+        /** Require the commit to have been made at or before TIME. */
+        Query until(long time) {
+            this.until = time;
+            return this;
+        }
+
+        /** Return true iff R meets every condition. */
+        boolean matches(Record r) {
+            if (r.time < this.since || r.time > this.until) {
+                return false;
+            }
+            if (this.exact != null && !r.message.equals(this.exact)) {
+                return false;
+            }
+            if (this.substring != null && !r.message.contains(this.substring)) {
+                return false;
+            }
+            return this.tokens.isEmpty()
+                || tokenize(r.message).containsAll(this.tokens);
+        }
+
+        /** Return true iff only a time range is asked for. */
+        private boolean timeOnly() {
+            return this.exact == null && this.substring == null
+                && this.tokens.isEmpty();
+        }
+    }
+
+    /** Number of bytes in one entry of the index file. */
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    /** The directory holding the log. */
+    private final File dir;
+
+    /** The log kept in DIR. */
+    CommitLog(File dir) {
+        this.dir = dir;
+    }
+
+    /** Return true iff the log exists. */
+    boolean isValid() {
+        return records().isFile() && index().isFile() && tokens().isFile();
+    }
+
+    /** Make the log hold COMMITS, oldest first, unless a valid log
+     *  appears meanwhile.  The new log is written in a directory of its
+     *  own and renamed into place, so commands reading the log under a
+     *  shared lock, some of which may rebuild it at once, never see a
+     *  partial one.  The check and the rename are made under an exclusive
+     *  lock of their own, so only what a crash left behind is ever cleared,
+     *  never a log another reader has just put in place. */
+    void rebuild(Collection<Commit> commits) {
+        ArrayList<Commit> sorted = new ArrayList<>(commits);
+        sorted.sort((a, b) -> Long.compare(a.getTime(), b.getTime()));
+        File temp;
+        try {
+            temp = Files.createTempDirectory(this.dir.getParentFile().toPath(),
+                                             this.dir.getName()).toFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        CommitLog fresh = new CommitLog(temp);
+        try {
+            fresh.append(sorted);
+            RepoLock lock = RepoLock.acquire(lock(), false);
+            try {
+                if (!isValid()) {
+                    clear();
+                    Files.move(temp.toPath(), this.dir.toPath(),
+                               StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                lock.close();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            fresh.clear();
+        }
+    }
+
+    /** Delete the log, so that it is rebuilt when next needed. */
+    void clear() {
+        for (File f : new File[] {records(), index(), tokens()}) {
+            f.delete();
+        }
+        this.dir.delete();
+    }
+
+    /** Add C to the log, if the log exists. */
+    void append(Commit c) {
+        if (isValid()) {
+            append(List.of(c));
+        }
+    }
+
+    /** Add COMMITS to the log, creating its files if needed. */
+    private void append(List<Commit> commits) {
+        try (DataOutputStream rec = open(records());
+             DataOutputStream idx = open(index());
+             DataOutputStream tok = open(tokens())) {
+            long offset = records().length();
+            int number = (int) (index().length() / INDEX_ENTRY_SIZE);
+            for (Commit c : commits) {
+                idx.writeLong(offset);
+                idx.writeLong(c.getTime());
+                byte[] message = c.getMessage().getBytes(StandardCharsets.UTF_8);
+                rec.write(Pack.toBytes(c.getHash()));
+                rec.writeLong(c.getTime());
+                rec.writeInt(message.length);
+                rec.write(message);
+                offset += Pack.HASH_BYTES + 8 + 4 + message.length;
+                TreeSet<String> words = tokenize(c.getMessage());
+                tok.writeInt(number);
+                tok.writeInt(words.size());
+                for (String word : words) {
+                    Commit.writeString(tok, word);
+                }
+                number += 1;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream appending to FILE. */
+    private static DataOutputStream open(File file) throws IOException {
+        return new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /** Pass every record to ACTION, in the order they were logged, reading
+     *  the records file once from start to end, until ACTION returns
+     *  false. */
+    void forEach(Predicate<Record> action) {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(records())))) {
+            while (true) {
+                Record r;
+                try {
+                    r = readRecord(in);
+                } catch (EOFException excp) {
+                    break;
+                }
+                if (!action.test(r)) {
+                    break;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the records meeting QUERY, in the order they were logged.
+     *  Token queries start from the words' postings and time-only queries
+     *  from the index file, so that only candidate records are read. */
+    List<Record> search(Query query) {
+        ArrayList<Record> result = new ArrayList<>();
+        if (!query.tokens.isEmpty()) {
+            for (Record r : readRecords(postings(query.tokens))) {
+                if (query.matches(r)) {
+                    result.add(r);
+                }
+            }
+        } else if (query.timeOnly()) {
+            result.addAll(readRecords(inRange(query.since, query.until)));
+        } else {
+            forEach(r -> {
+                if (query.matches(r)) {
+                    result.add(r);
+                }
+                return true;
+            });
+        }
+        return result;
+    }
+
+    /** Return the numbers of the records whose messages hold every one of
+     *  WORDS, in increasing order. */
+    private TreeSet<Integer> postings(List<String> words) {
+        HashMap<String, TreeSet<Integer>> wanted = new HashMap<>();
+        for (String word : words) {
+            wanted.put(word, new TreeSet<>());
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(tokens())))) {
+            while (true) {
+                int number;
+                try {
+                    number = in.readInt();
+                } catch (EOFException excp) {
+                    break;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i += 1) {
+                    TreeSet<Integer> list = wanted.get(Commit.readString(in));
+                    if (list != null) {
+                        list.add(number);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        TreeSet<Integer> result = null;
+        for (TreeSet<Integer> list : wanted.values()) {
+            if (result == null) {
+                result = list;
+            } else {
+                result.retainAll(list);
+            }
+        }
+        return result == null ? new TreeSet<>() : result;
+    }
+
+    /** Return the numbers of the records with times from SINCE to UNTIL,
+     *  in increasing order. */
+    private List<Integer> inRange(long since, long until) {
+        ArrayList<Integer> result = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(index())))) {
+            long n = index().length() / INDEX_ENTRY_SIZE;
+            for (int i = 0; i < n; i += 1) {
+                in.readLong();
+                long time = in.readLong();
+                if (time >= since && time <= until) {
+                    result.add(i);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Return the records whose NUMBERS are given, found through the
+     *  index file. */
+    private List<Record> readRecords(Collection<Integer> numbers) {
+        ArrayList<Record> result = new ArrayList<>();
+        try (RandomAccessFile idx = new RandomAccessFile(index(), "r");
+             RandomAccessFile rec = new RandomAccessFile(records(), "r")) {
+            for (int number : numbers) {
+                idx.seek((long) number * INDEX_ENTRY_SIZE);
+                rec.seek(idx.readLong());
+                result.add(readRecord(rec));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Return the record read from IN. */
+    private static Record readRecord(DataInput in) throws IOException {
+        byte[] hash = new byte[Pack.HASH_BYTES];
+        in.readFully(hash);
+        long time = in.readLong();
+        byte[] message = new byte[in.readInt()];
+        in.readFully(message);
+        return new Record(Pack.toHex(hash), time,
+                          new String(message, StandardCharsets.UTF_8));
+    }
+
+    /** Return the distinct lowercase words of TEXT, a word being a run of
+     *  letters and digits. */
+    static TreeSet<String> tokenize(String text) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /** Return the records file. */
+    private File records() {
+        return Utils.join(this.dir, "records");
+    }
+
+    /** Return the index file. */
+    private File index() {
+        return Utils.join(this.dir, "index");
+    }
+
+    /** Return the file locked while the log is put in place. */
+    private File lock() {
+        return new File(this.dir.getParentFile(), this.dir.getName() + ".lock");
+    }
+
+    /** Return the tokens file. */
+    private File tokens() {
+        return Utils.join(this.dir, "tokens");
+    }
+
+}
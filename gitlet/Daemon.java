@@ -0,0 +1,206 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/** A long-running server that keeps one Repository, with its object
+ *  stores, commit graph and stat-cache index, loaded between commands,
+ *  and runs the commands that thin clients send it over the Unix-domain
+ *  socket .gitlet/daemon.sock.  Commands run one at a time.
+ *
+ *  Before each command the daemon compares a fingerprint of the mutable
+ *  state in .gitlet (the branch refs, the staging area, the index, the
+ *  commit graph, the lists of packs and the count of garbage collections)
+ *  with the one it took after the previous command.  If anything changed
+ *  behind its back, it loads the repository afresh, dropping every cached
+ *  object, since gc may have deleted some; otherwise it rereads the
+ *  current branch and the staging area and drops the commit graph, the
+ *  indexes and the commit log, which commands may extend through their
+ *  files alone, so they are loaded again when needed.  Objects are never
+ *  changed in place and only gc deletes them, so cached ones stay valid
+ *  until the count changes; a gc run by the daemon itself drops its own
+ *  cache.
+ *  Each command holds the repository lock from the fingerprint check to
+ *  the end, as it would when run directly.
+ *
+ *  A request is the argument count followed by the arguments, each in
+ *  modified UTF-8.  A reply is an exit status, a length and that many
+ *  bytes of output.
+ *  @author Kelvin Mo
+ */
+class Daemon {
+
+    /** The socket the daemon listens on. */
+    static final File SOCKET = Utils.join(Repository.Gitlet, "daemon.sock");
+
+    /** The loaded repository, or null if it must be loaded again. */
+    private Repository repo;
+
+    /** Fingerprint of .gitlet taken after the last command. */
+    private String fingerprint;
+
+    /** Serve commands until a client asks the daemon to stop. */
+    static void serve() {
+        new Daemon().listen();
+    }
+
+    /** Accept and run commands until a client asks the daemon to stop. */
+    private void listen() {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(SOCKET.toPath());
+        if (SOCKET.exists()) {
+            if (forward(new String[] {"daemon", "ping"})) {
+                System.out.println("A daemon is already running.");
+                return;
+            }
+            SOCKET.delete();
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            SOCKET.deleteOnExit();
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    DataInputStream in =
+                        new DataInputStream(Channels.newInputStream(client));
+                    String[] args = new String[in.readInt()];
+                    for (int i = 0; i < args.length; i += 1) {
+                        args[i] = in.readUTF();
+                    }
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    int status = 0;
+                    if (args.length > 1 && args[0].equals("daemon")) {
+                        running = !args[1].equals("stop");
+                    } else {
+                        status = run(args, output);
+                    }
+                    DataOutputStream out =
+                        new DataOutputStream(Channels.newOutputStream(client));
+                    out.writeInt(status);
+                    out.writeInt(output.size());
+                    output.writeTo(out);
+                    out.flush();
+                } catch (IOException excp) {
+                    continue;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /** Run the command ARGS, writing what it prints to OUTPUT, and return
+     *  its exit status.  The repository is loaded again first if .gitlet
+     *  changed since the last command.  If the command fails, its error
+     *  is written to OUTPUT and the repository is loaded again before the
+     *  next command. */
+    private int run(String[] args, ByteArrayOutputStream output) {
+        PrintStream saved = System.out;
+        PrintStream capture = new PrintStream(output, true);
+        System.setOut(capture);
+        try {
+            RepoLock lock = RepoLock.forCommand(args);
+            try {
+                String current = fingerprint();
+                if (this.repo == null || !current.equals(this.fingerprint)) {
+                    this.repo = new Repository();
+                } else {
+                    this.repo.refresh();
+                }
+                Main.run(this.repo, args);
+                this.fingerprint = fingerprint();
+                return 0;
+            } finally {
+                lock.close();
+            }
+        } catch (GitletException | IllegalArgumentException excp) {
+            System.out.println(excp.getMessage());
+            this.repo = null;
+            return -1;
+        } catch (RuntimeException excp) {
+            System.out.println(excp);
+            this.repo = null;
+            return -1;
+        } finally {
+            capture.flush();
+            System.setOut(saved);
+        }
+    }
+
+    /** Return a summary of the size and modification time of every file
+     *  in .gitlet that can change other than by adding objects, with the
+     *  count of garbage collections, which delete them. */
+    private static String fingerprint() {
+        StringBuilder result = new StringBuilder();
+        for (String branch : Repository.branchNames()) {
+            stamp(result, Utils.join(Repository.Branches, branch));
+        }
+        stamp(result, Utils.join(Repository.Staging, "stage"));
+        stamp(result, Repository.IndexFile);
+        stamp(result, Repository.Graph);
+        if (Repository.GcGeneration.isFile()) {
+            result.append(Utils.readContentsAsString(Repository.GcGeneration)).append(';');
+        }
+        for (File store : new File[] {Repository.Blobs, Repository.Commits,
+                                      Repository.Trees}) {
+            String[] packs = Utils.join(store, "pack").list();
+            if (packs != null) {
+                Arrays.sort(packs);
+                result.append(String.join(",", packs)).append(';');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Append the name, size and modification time of FILE to RESULT. */
+    private static void stamp(StringBuilder result, File file) {
+        result.append(file.getName()).append(':').append(file.length())
+            .append(':').append(file.lastModified()).append(';');
+    }
+
+    /** Send the command ARGS to the daemon of the current repository and
+     *  print its output.  Return false, having done nothing, if no daemon
+     *  is running. */
+    static boolean forward(String[] args) {
+        if (!SOCKET.exists()) {
+            return false;
+        }
+        int status;
+        byte[] output;
+        try (SocketChannel channel = SocketChannel.open(
+                 UnixDomainSocketAddress.of(SOCKET.toPath()))) {
+            DataOutputStream out =
+                new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in =
+                new DataInputStream(Channels.newInputStream(channel));
+            status = in.readInt();
+            output = in.readNBytes(in.readInt());
+        } catch (IOException excp) {
+            return false;
+        }
+        System.out.write(output, 0, output.length);
+        System.out.flush();
+        if (status != 0) {
+            System.exit(status);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Line-level deltas between two byte sequences.  A delta is a list of
+ *  instructions that rebuild a target from a base: COPY instructions
+ *  name a run of whole lines of the base, and INSERT instructions carry
+ *  literal bytes.  Lines are split after each '\n', so any contents,
+ *  textual or not, are reproduced exactly.
+ *  @author Kelvin Mo
+ */
+class Delta {
+
+    /** Instruction tag copying a run of base lines. */
+    static final int COPY = 0;
+
+    /** Instruction tag inserting literal bytes. */
+    static final int INSERT = 1;
+
+    /** Largest number of lines in either input for which a delta is
+     *  attempted; beyond this, comparing very different inputs becomes
+     *  too expensive. */
+    static final int MAX_LINES = 20000;
+
+    /** Return a delta that turns BASE into TARGET, or null if either has
+     *  too many lines to compare. */
+    static byte[] compute(byte[] base, byte[] target) {
+        int[] baseStarts = lineStarts(base);
+        int[] targetStarts = lineStarts(target);
+        if (baseStarts.length - 1 > MAX_LINES
+            || targetStarts.length - 1 > MAX_LINES) {
+            return null;
+        }
+        Diff diff = new MyersDiff();
+        diff.setSequences(lines(base, baseStarts), lines(target, targetStarts));
+        int[] edits = diff.diffs();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            int pos1 = 0;
+            for (int k = 0; k < edits.length; k += 4) {
+                if (edits[k] > pos1) {
+                    copy(out, pos1, edits[k] - pos1);
+                }
+                if (edits[k + 3] > 0) {
+                    int from = targetStarts[edits[k + 2]];
+                    int to = targetStarts[edits[k + 2] + edits[k + 3]];
+                    insert(out, target, from, to - from);
+                }
+                pos1 = edits[k] + edits[k + 1];
+            }
+            if (pos1 < baseStarts.length - 1) {
+                copy(out, pos1, baseStarts.length - 1 - pos1);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] starts = lineStarts(base);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(delta));
+            while (in.available() > 0) {
+                int kind = in.readByte();
+                if (kind == COPY) {
+                    int first = in.readInt();
+                    int count = in.readInt();
+                    result.write(base, starts[first],
+                                 starts[first + count] - starts[first]);
+                } else if (kind == INSERT) {
+                    int length = in.readInt();
+                    result.write(in.readNBytes(length));
+                } else {
+                    throw new IllegalArgumentException("corrupt delta");
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Write a COPY of COUNT base lines starting at FIRST to OUT. */
+    private static void copy(DataOutputStream out, int first, int count)
+        throws IOException {
+        out.writeByte(COPY);
+        out.writeInt(first);
+        out.writeInt(count);
+    }
+
+    /** Write an INSERT of the LENGTH bytes of DATA at FROM to OUT. */
+    private static void insert(DataOutputStream out, byte[] data, int from,
+                               int length) throws IOException {
+        out.writeByte(INSERT);
+        out.writeInt(length);
+        out.write(data, from, length);
+    }
+
+    /** Return the offsets at which each line of DATA starts, followed by
+     *  DATA.length.  Line K thus spans [result[K] .. result[K + 1]). */
+    static int[] lineStarts(byte[] data) {
+        int count = 0;
+        for (int i = 0; i < data.length; i += 1) {
+            if (data[i] == '\n' && i + 1 < data.length) {
+                count += 1;
+            }
+        }
+        int[] result = new int[data.length == 0 ? 1 : count + 2];
+        int k = 1;
+        for (int i = 0; i < data.length; i += 1) {
+            if (data[i] == '\n' && i + 1 < data.length) {
+                result[k] = i + 1;
+                k += 1;
+            }
+        }
+        result[result.length - 1] = data.length;
+        return result;
+    }
+
+    /** Return the lines of DATA, split at STARTS, as Strings holding one
+     *  char per byte so that equal lines compare equal. */
+    static List<String> lines(byte[] data, int[] starts) {
+        ArrayList<String> result = new ArrayList<>(starts.length - 1);
+        for (int k = 0; k + 1 < starts.length; k += 1) {
+            result.add(new String(data, starts[k], starts[k + 1] - starts[k],
+                                  StandardCharsets.ISO_8859_1));
+        }
+        return result;
+    }
+
+}
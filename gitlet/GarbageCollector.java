@@ -0,0 +1,160 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Removal of the objects that nothing can reach any more.  The mark
+ *  phase walks history from the given roots one generation of commits at
+ *  a time, reading each generation in parallel, and then walks the trees
+ *  of all commits found in parallel, skipping trees already marked.  The
+ *  sweep phase deletes everything left unmarked, repacking any store
+ *  whose packs held some of it.
+ *
+ *  Loose objects written within a grace period count as roots too, with
+ *  all they reach, so an object written by a command that has not yet
+ *  published the ref or staging entry naming it is never swept.  Commands
+ *  write new objects loose; only repack, gc and the remote commands write
+ *  packs, and those hold nothing still unpublished, so packed objects get
+ *  no grace period and are swept as soon as nothing reaches them.
+ *  @author Kelvin Mo
+ */
+class GarbageCollector {
+
+    /** Default grace period, in milliseconds. */
+    static final long GRACE_MILLIS = 60 * 60 * 1000;
+
+    /** Store of blobs. */
+    private final ObjectStore blobs;
+
+    /** Store of commits. */
+    private final ObjectStore commits;
+
+    /** Store of trees. */
+    private final ObjectStore trees;
+
+    /** Commits marked as reachable. */
+    private final Set<String> liveCommits = ConcurrentHashMap.newKeySet();
+
+    /** Trees marked as reachable. */
+    private final Set<String> liveTrees = ConcurrentHashMap.newKeySet();
+
+    /** Blobs and chunks marked as reachable. */
+    private final Set<String> liveBlobs = ConcurrentHashMap.newKeySet();
+
+    /** A collector of the objects in the three stores. */
+    GarbageCollector(ObjectStore blobs, ObjectStore commits,
+                     ObjectStore trees) {
+        this.blobs = blobs;
+        this.commits = commits;
+        this.trees = trees;
+    }
+
+    /** Mark as reachable every object reachable from the commits COMMITS
+     *  and the blobs BLOBS, and every loose object written at or after
+     *  CUTOFF, in milliseconds, with what it reaches. */
+    void mark(Collection<String> commits, Collection<String> blobs,
+              long cutoff) {
+        List<String> frontier = new ArrayList<>(commits);
+        frontier.addAll(recent(this.commits, cutoff));
+        List<String> roots = new ArrayList<>(recent(this.trees, cutoff));
+        this.liveBlobs.addAll(blobs);
+        this.liveBlobs.addAll(recent(this.blobs, cutoff));
+
+        while (!frontier.isEmpty()) {
+            List<Commit> found = frontier.parallelStream()
+                .filter(this.liveCommits::add)
+                .map(hash -> new Commit(this.commits.read(hash)))
+                .collect(Collectors.toList());
+            frontier = new ArrayList<>();
+            for (Commit c : found) {
+                roots.add(c.getTree());
+                for (String parent : c.getAllParents()) {
+                    if (!this.liveCommits.contains(parent)) {
+                        frontier.add(parent);
+                    }
+                }
+            }
+        }
+        roots.parallelStream().forEach(
+            root -> Tree.mark(this.trees, root, this.liveTrees, this.liveBlobs));
+        new ArrayList<>(this.liveBlobs).parallelStream().forEach(hash -> {
+            List<String> chunks = this.blobs.chunks(hash);
+            if (chunks != null) {
+                this.liveBlobs.addAll(chunks);
+            }
+        });
+    }
+
+    /** Delete every object not marked, commits first and blobs last, so
+     *  that an interrupted sweep leaves no object naming a missing one.
+     *  BLOBBASES supplies the delta bases for repacking blobs and is
+     *  called only if some blob to delete is packed.  Return the number
+     *  of objects deleted. */
+    int sweep(Supplier<Map<String, String>> blobBases) {
+        return sweep(this.commits, this.liveCommits, HashMap::new)
+            + sweep(this.trees, this.liveTrees, HashMap::new)
+            + sweep(this.blobs, this.liveBlobs, blobBases);
+    }
+
+    /** Return the number of bytes the three stores take on disk. */
+    long size() {
+        return size(this.blobs.getDir()) + size(this.commits.getDir())
+            + size(this.trees.getDir());
+    }
+
+    /** Return the loose objects of STORE written at or after CUTOFF. */
+    private static List<String> recent(ObjectStore store, long cutoff) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String hash : store.listLoose()) {
+            if (store.modified(hash) >= cutoff) {
+                result.add(hash);
+            }
+        }
+        return result;
+    }
+
+    /** Delete the objects of STORE not in LIVE, repacking with the bases
+     *  from BASES if any of them is packed, and return how many there
+     *  were. */
+    private static int sweep(ObjectStore store, Set<String> live,
+                             Supplier<Map<String, String>> bases) {
+        HashSet<String> dead = new HashSet<>(store.list());
+        dead.removeAll(live);
+        if (dead.isEmpty()) {
+            return 0;
+        }
+        boolean packed = false;
+        for (String hash : dead) {
+            packed |= !store.isLoose(hash);
+        }
+        store.delete(dead, packed ? bases.get() : new HashMap<>());
+        return dead.size();
+    }
+
+    /** Return the total size of the files under DIR. */
+    private static long size(File dir) {
+        if (!dir.isDirectory()) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            return paths.map(Path::toFile).filter(File::isFile)
+                .mapToLong(File::length).sum();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
@@ -8,6 +8,8 @@ package gitlet;
  */
 class GitletException extends RuntimeException {
 
+    /** The serial version of this class. */
+    private static final long serialVersionUID = 1L;
 
     /** A GitletException with no message. */
     GitletException() {
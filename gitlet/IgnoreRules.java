@@ -0,0 +1,92 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+
+/** The rules saying which working files gitlet never reports or scans,
+ *  read from the file .gitletignore at the top of the working directory.
+ *  Each non-blank line not starting with '#' is a glob pattern.  A
+ *  pattern ending in '/' matches only directories.  A pattern containing
+ *  any other '/' is matched against the whole path from the top of the
+ *  working directory; otherwise it is matched against the last name of
+ *  the path, at any depth.  The .gitlet directory is always ignored.
+ *  @author Kelvin Mo
+ */
+class IgnoreRules {
+
+    /** Name of the file holding the rules. */
+    static final String FILE_NAME = ".gitletignore";
+
+    /** Matchers applied to whole paths. */
+    private final ArrayList<PathMatcher> paths = new ArrayList<>();
+
+    /** Matchers applied to last names. */
+    private final ArrayList<PathMatcher> names = new ArrayList<>();
+
+    /** Which of PATHS and NAMES apply only to directories. */
+    private final ArrayList<Boolean> pathDirs = new ArrayList<>(),
+        nameDirs = new ArrayList<>();
+
+    /** The rules in .gitletignore under the working directory ROOT, if
+     *  that file exists. */
+    IgnoreRules(File root) {
+        File file = Utils.join(root, FILE_NAME);
+        if (!file.isFile()) {
+            return;
+        }
+        FileSystem fs = FileSystems.getDefault();
+        for (String line : Utils.readContentsAsString(file).split("\n")) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean dirOnly = pattern.endsWith("/");
+            if (dirOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            boolean anchored = pattern.contains("/");
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            PathMatcher matcher = fs.getPathMatcher("glob:" + pattern);
+            if (anchored) {
+                this.paths.add(matcher);
+                this.pathDirs.add(dirOnly);
+            } else {
+                this.names.add(matcher);
+                this.nameDirs.add(dirOnly);
+            }
+        }
+    }
+
+    /** Return true iff PATH, relative to the working directory with '/'
+     *  separators, is ignored.  ISDIR says whether PATH is a directory. */
+    boolean ignored(String path, boolean isDir) {
+        int slash = path.lastIndexOf('/');
+        String name = path.substring(slash + 1);
+        if (name.equals(".gitlet")) {
+            return true;
+        }
+        FileSystem fs = FileSystems.getDefault();
+        for (int i = 0; i < this.names.size(); i += 1) {
+            if ((isDir || !this.nameDirs.get(i))
+                && this.names.get(i).matches(fs.getPath(name))) {
+                return true;
+            }
+        }
+        for (int i = 0; i < this.paths.size(); i += 1) {
+            if ((isDir || !this.pathDirs.get(i))
+                && this.paths.get(i).matches(fs.getPath(path))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,226 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** A cache of the blob hashes of working files, keyed by path and
+ *  validated by the size, modification time and inode of each file, so
+ *  that files whose stat data did not change are never read again.
+ *
+ *  A file changed twice within one tick of the file system clock keeps
+ *  its modification time, so an entry is trusted only if the file was
+ *  modified strictly before the index itself was last written.  Entries
+ *  recorded in the same tick are rehashed the next time they are asked
+ *  for, which also refreshes them.
+ *
+ *  The file holds a format version byte and an entry count, then for each
+ *  entry its path, size, modification time in nanoseconds, inode and
+ *  binary blob hash.
+ *  @author Kelvin Mo
+ */
+class Index {
+
+    /** Version of the encoding written by this class. */
+    static final int FORMAT_VERSION = 1;
+
+    /** The stat data and hash of one working file. */
+    private static class Entry {
+        /** Size of the file in bytes. */
+        private long size;
+        /** Modification time of the file, in nanoseconds. */
+        private long mtime;
+        /** Inode of the file, or 0 where inodes are not available. */
+        private long inode;
+        /** Blob hash of the contents of the file. */
+        private String hash;
+    }
+
+    /** The file holding this index. */
+    private final File file;
+
+    /** A treemap from working file paths to their entries. */
+    private TreeMap<String, Entry> entries;
+
+    /** Modification time of the index file when it was read or last
+     *  written, in nanoseconds. */
+    private long stamp;
+
+    /** True iff entries changed since the index was read. */
+    private boolean dirty;
+
+    /** The index stored in FILE, which need not exist yet. */
+    Index(File file) {
+        this.file = file;
+        this.entries = new TreeMap<>();
+        if (file.isFile()) {
+            load();
+        }
+    }
+
+    /** Read all entries from FILE, leaving the index empty if it is in
+     *  an unknown format. */
+    private void load() {
+        byte[] encoded = Utils.readContents(this.file);
+        if (encoded.length == 0 || encoded[0] != FORMAT_VERSION) {
+            return;
+        }
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(encoded));
+            in.readByte();
+            int size = in.readInt();
+            for (int i = 0; i < size; i += 1) {
+                String path = Commit.readString(in);
+                Entry e = new Entry();
+                e.size = in.readLong();
+                e.mtime = in.readLong();
+                e.inode = in.readLong();
+                e.hash = Pack.toHex(in.readNBytes(Pack.HASH_BYTES));
+                this.entries.put(path, e);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        this.stamp = modified(this.file);
+    }
+
+    /** Return the blob hash of the working file FILE, whose path is PATH,
+     *  or null if it does not exist.  The file is read only if its stat
+     *  data differ from the entry for PATH.  Safe to call from several
+     *  threads at once; files are hashed outside the lock. */
+    String hash(String path, File file) {
+        Entry current = stat(file);
+        if (current == null) {
+            forget(path);
+            return null;
+        }
+        String cached = cached(path, current);
+        if (cached != null) {
+            return cached;
+        }
+        current.hash = Utils.sha1(file);
+        put(path, current);
+        return current.hash;
+    }
+
+    /** Return the hash in the entry for PATH if it is trusted and matches
+     *  the stat data in CURRENT, and null otherwise. */
+    private synchronized String cached(String path, Entry current) {
+        Entry e = this.entries.get(path);
+        if (e != null && e.size == current.size && e.mtime == current.mtime
+            && e.inode == current.inode && e.mtime < this.stamp) {
+            return e.hash;
+        }
+        return null;
+    }
+
+    /** Make E the entry for PATH. */
+    private synchronized void put(String path, Entry e) {
+        this.entries.put(path, e);
+        this.dirty = true;
+    }
+
+    /** Record that the working file FILE, whose path is PATH, was just
+     *  written with the contents of blob HASH. */
+    void record(String path, File file, String hash) {
+        Entry current = stat(file);
+        if (current == null) {
+            forget(path);
+            return;
+        }
+        current.hash = hash;
+        put(path, current);
+    }
+
+    /** Drop the entry for PATH, if any. */
+    synchronized void forget(String path) {
+        if (this.entries.remove(path) != null) {
+            this.dirty = true;
+        }
+    }
+
+    /** Write this index to its file if any entry changed. */
+    synchronized void save() {
+        if (!this.dirty) {
+            return;
+        }
+        File temp = Utils.tempFile(this.file);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(this.entries.size());
+            for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                Entry e = entry.getValue();
+                Commit.writeString(out, entry.getKey());
+                out.writeLong(e.size);
+                out.writeLong(e.mtime);
+                out.writeLong(e.inode);
+                out.write(Pack.toBytes(e.hash));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (!temp.renameTo(this.file)) {
+            temp.delete();
+            throw Utils.error("Could not write %s.", this.file.getName());
+        }
+        this.stamp = modified(this.file);
+        this.dirty = false;
+    }
+
+    /** Return an entry holding the stat data of FILE, or null if it is not
+     *  a normal file. */
+    private static Entry stat(File file) {
+        Path path = file.toPath();
+        try {
+            BasicFileAttributes attrs =
+                Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            Entry result = new Entry();
+            result.size = attrs.size();
+            result.mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            result.inode = inode(path);
+            return result;
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the inode of the file at PATH, or 0 if the file system does
+     *  not report one. */
+    private static long inode(Path path) throws IOException {
+        try {
+            Object ino = Files.getAttribute(path, "unix:ino");
+            return ino instanceof Long ? (Long) ino : 0;
+        } catch (UnsupportedOperationException | IllegalArgumentException excp) {
+            return 0;
+        }
+    }
+
+    /** Return the modification time of FILE in nanoseconds. */
+    private static long modified(File file) {
+        try {
+            FileTime time = Files.getLastModifiedTime(file.toPath());
+            return time.to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/** A write-ahead journal that makes the writes of refs and the staging
+ *  area done by one command take effect together.
+ *
+ *  Until commit, a replaced file is written to a temporary file and a
+ *  removed file is only noted.  New objects go to their final names at
+ *  once, since later steps of the command read them, but each is first
+ *  listed in the journal file.  Commit then flushes
+ *  every new object and temporary file to disk in one batch, appends the
+ *  planned renames and removals and an END line to the journal, flushes
+ *  it, and only then carries them out, so refs never name objects that
+ *  are not yet durable.
+ *
+ *  Files derived from the objects, such as the index of commit ids, are
+ *  only appended to once the renames are done, so they never name an
+ *  object that a failed command dropped.  The journal names them before
+ *  END and is removed only after the appends, so that if a crash cuts
+ *  the appends short, recovery deletes those files, to be rebuilt from
+ *  the objects when next needed, rather than leave a partial entry.
+ *
+ *  After a crash, recover finishes the renames and removals of a journal
+ *  that reached END and deletes the derived files it names.  Otherwise it
+ *  deletes the objects and temporary files that the journal lists.
+ *  Nothing published can name those objects, since publishing happens
+ *  only after END.
+ *  @author Kelvin Mo
+ */
+class Journal {
+
+    /** Tag of a journal line naming a new object. */
+    static final String OBJECT = "O";
+
+    /** Tag of a journal line naming a file to be replaced, followed by
+     *  the temporary file replacing it. */
+    static final String WRITE = "W";
+
+    /** Tag of a journal line naming a file to be removed. */
+    static final String DELETE = "D";
+
+    /** Tag of a journal line naming a derived file or directory to be
+     *  appended to after the renames. */
+    static final String DERIVED = "X";
+
+    /** The line ending a complete journal. */
+    static final String END = "END";
+
+    /** Prefix of the names of the temporary files holding new contents,
+     *  which live beside the journal so that no directory listing of refs
+     *  ever sees them. */
+    static final String PREFIX = "journal-new-";
+
+    /** The journal file. */
+    private final File file;
+
+    /** A map from each file to be replaced to the temporary file holding
+     *  its new contents, in the order first written. */
+    private LinkedHashMap<File, File> writes = new LinkedHashMap<>();
+
+    /** A map from each ref updated by compare-and-swap to the contents it
+     *  must still have when this journal is committed. */
+    private HashMap<File, String> expected = new HashMap<>();
+
+    /** Files to be removed. */
+    private LinkedHashSet<File> deletes = new LinkedHashSet<>();
+
+    /** New objects written since the last commit. */
+    private ArrayList<File> objects = new ArrayList<>();
+
+    /** Derived files to be appended to. */
+    private LinkedHashSet<File> derived = new LinkedHashSet<>();
+
+    /** Appends to derived files, in the order arranged. */
+    private ArrayList<Runnable> appends = new ArrayList<>();
+
+    /** Appends object lines to the journal file, or null if none has been
+     *  written since the last commit. */
+    private Writer log;
+
+    /** A journal kept in FILE. */
+    Journal(File file) {
+        this.file = file;
+    }
+
+    /** Arrange for TARGET to hold the concatenation of CONTENTS, as
+     *  Utils.writeContents would, once this journal is committed. */
+    void write(File target, Object... contents) {
+        File temp = this.writes.get(target);
+        if (temp == null) {
+            temp = new File(this.file.getParentFile(),
+                            PREFIX + this.writes.size());
+        }
+        Utils.writeContents(temp, contents);
+        this.writes.put(target, temp);
+        this.deletes.remove(target);
+    }
+
+    /** Arrange for the ref REF to hold VALUE once this journal is
+     *  committed, provided it still holds EXPECTED then, or still does not
+     *  exist if EXPECTED is null.  Otherwise the commit fails and nothing
+     *  is changed. */
+    void update(File ref, String expected, String value) {
+        if (!this.expected.containsKey(ref)) {
+            this.expected.put(ref, expected);
+        }
+        write(ref, value);
+    }
+
+    /** Arrange for TARGET to be removed once this journal is committed. */
+    void delete(File target) {
+        File temp = this.writes.remove(target);
+        if (temp != null) {
+            temp.delete();
+        }
+        this.deletes.add(target);
+    }
+
+    /** Note that the object file OBJECT was just created in place, so that
+     *  it is flushed to disk before commit publishes anything.  May be
+     *  called from several threads at once. */
+    synchronized void added(File object) {
+        try {
+            if (this.log == null) {
+                this.log = new OutputStreamWriter(
+                    new FileOutputStream(this.file, true), StandardCharsets.UTF_8);
+            }
+            this.log.write(OBJECT + "\t" + object.getPath() + "\n");
+            this.log.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        this.objects.add(object);
+    }
+
+    /** Arrange for APPEND, which adds entries for new objects to the
+     *  derived file or directory FILE, to run once this journal is
+     *  committed. */
+    void append(File file, Runnable append) {
+        this.derived.add(file);
+        this.appends.add(append);
+    }
+
+    /** Make every write and removal arranged since the last commit take
+     *  effect atomically and durably, then run the appends arranged.  Throws GitletException, having
+     *  changed nothing, if a ref updated by compare-and-swap was moved by
+     *  someone else. */
+    void commit() {
+        if (this.writes.isEmpty() && this.deletes.isEmpty()
+            && this.objects.isEmpty() && this.appends.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<File, String> e : this.expected.entrySet()) {
+            File ref = e.getKey();
+            String current =
+                ref.isFile() ? Utils.readContentsAsString(ref) : null;
+            if (current == null ? e.getValue() != null
+                : !current.equals(e.getValue())) {
+                abandon();
+                throw Utils.error("Branch %s was moved by another command; "
+                                  + "nothing was changed.", ref.getName());
+            }
+        }
+        try {
+            LinkedHashSet<File> dirs = new LinkedHashSet<>();
+            for (File object : this.objects) {
+                force(object);
+                dirs.add(object.getParentFile());
+            }
+            for (File temp : this.writes.values()) {
+                force(temp);
+            }
+            for (File dir : dirs) {
+                forceDir(dir);
+            }
+
+            closeLog();
+            try (FileOutputStream out = new FileOutputStream(this.file, true);
+                 Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                for (Map.Entry<File, File> e : this.writes.entrySet()) {
+                    w.write(WRITE + "\t" + e.getKey().getPath() + "\t"
+                            + e.getValue().getPath() + "\n");
+                }
+                for (File target : this.deletes) {
+                    w.write(DELETE + "\t" + target.getPath() + "\n");
+                }
+                for (File target : this.derived) {
+                    w.write(DERIVED + "\t" + target.getPath() + "\n");
+                }
+                w.write(END + "\n");
+                w.flush();
+                out.getFD().sync();
+            }
+
+            dirs.clear();
+            for (Map.Entry<File, File> e : this.writes.entrySet()) {
+                move(e.getValue(), e.getKey());
+                dirs.add(e.getKey().getParentFile());
+            }
+            for (File target : this.deletes) {
+                target.delete();
+                dirs.add(target.getParentFile());
+            }
+            for (File dir : dirs) {
+                forceDir(dir);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        this.writes.clear();
+        this.expected.clear();
+        this.deletes.clear();
+        this.objects.clear();
+        runAppends();
+    }
+
+    /** Run the appends arranged and then remove the journal file.  If an
+     *  append fails, the derived files are deleted first, so that none is
+     *  left holding a partial entry. */
+    private void runAppends() {
+        List<Runnable> appends = this.appends;
+        List<File> derived = new ArrayList<>(this.derived);
+        this.appends = new ArrayList<>();
+        this.derived = new LinkedHashSet<>();
+        try {
+            for (Runnable append : appends) {
+                append.run();
+            }
+        } catch (RuntimeException excp) {
+            for (File target : derived) {
+                discard(target);
+            }
+            this.file.delete();
+            throw excp;
+        }
+        this.file.delete();
+    }
+
+    /** Drop every write arranged and every object written since the last
+     *  commit. */
+    void abandon() {
+        for (File temp : this.writes.values()) {
+            temp.delete();
+        }
+        for (File object : this.objects) {
+            object.delete();
+        }
+        this.writes.clear();
+        this.expected.clear();
+        this.deletes.clear();
+        this.objects.clear();
+        this.derived.clear();
+        this.appends.clear();
+        try {
+            closeLog();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        this.file.delete();
+    }
+
+    /** Complete or undo the command recorded in the journal FILE, if any,
+     *  as described above, and remove the journal. */
+    static void recover(File file) {
+        if (!file.isFile()) {
+            return;
+        }
+        List<String[]> lines = new ArrayList<>();
+        boolean complete = false;
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(),
+                                                         StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals(END)) {
+                    complete = true;
+                    break;
+                }
+                lines.add(line.split("\t"));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (String[] fields : lines) {
+            if (fields[0].equals(WRITE) && fields.length == 3) {
+                File temp = new File(fields[2]);
+                if (complete && temp.isFile()) {
+                    move(temp, new File(fields[1]));
+                } else {
+                    temp.delete();
+                }
+            } else if (fields[0].equals(DELETE) && fields.length == 2) {
+                if (complete) {
+                    new File(fields[1]).delete();
+                }
+            } else if (fields[0].equals(OBJECT) && fields.length == 2) {
+                if (!complete) {
+                    new File(fields[1]).delete();
+                }
+            } else if (fields[0].equals(DERIVED) && fields.length == 2) {
+                if (complete) {
+                    discard(new File(fields[1]));
+                }
+            }
+        }
+        file.delete();
+    }
+
+    /** Delete the derived file TARGET, or the directory TARGET and the
+     *  files in it. */
+    private static void discard(File target) {
+        File[] files = target.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        target.delete();
+    }
+
+    /** Close the stream of object lines, if open. */
+    private void closeLog() throws IOException {
+        if (this.log != null) {
+            this.log.close();
+            this.log = null;
+        }
+    }
+
+    /** Replace TARGET by SOURCE in one step, creating the directory of
+     *  TARGET if needed. */
+    private static void move(File source, File target) {
+        target.getParentFile().mkdirs();
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Flush the contents of FILE to disk. */
+    static void force(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /** Flush the entries of the directory DIR to disk, where the platform
+     *  allows it. */
+    static void forceDir(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(),
+                                                    StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+}
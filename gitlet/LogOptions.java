@@ -0,0 +1,98 @@
+package gitlet;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/** The options of log and global-log: "-n N" shows at most N commits,
+ *  "--since DAY" and "--until DAY" only commits made from the start or up
+ *  to the end of DAY, given as YYYY-MM-DD in local time, and "--oneline"
+ *  one line per commit instead of the full entry.
+ *  @author Kelvin Mo
+ */
+class LogOptions {
+
+    /** Largest number of commits shown. */
+    private int limit = Integer.MAX_VALUE;
+
+    /** Earliest time of a commit shown, in milliseconds. */
+    private long since = Long.MIN_VALUE;
+
+    /** Latest time of a commit shown, in milliseconds. */
+    private long until = Long.MAX_VALUE;
+
+    /** True iff each commit is shown on one line. */
+    private boolean oneline;
+
+    /** Return the options given by ARGS, whose first element is the
+     *  command, or null if they are malformed. */
+    static LogOptions parse(String[] args) {
+        LogOptions result = new LogOptions();
+        try {
+            for (int i = 1; i < args.length; i += 1) {
+                if (args[i].equals("--oneline")) {
+                    result.oneline = true;
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    return null;
+                }
+                i += 1;
+                switch (args[i - 1]) {
+                case "-n":
+                    result.limit = Integer.parseInt(args[i]);
+                    if (result.limit < 0) {
+                        return null;
+                    }
+                    break;
+                case "--since":
+                    result.since = startOfDay(args[i]);
+                    break;
+                case "--until":
+                    result.until = endOfDay(args[i]);
+                    break;
+                default:
+                    return null;
+                }
+            }
+        } catch (NumberFormatException | DateTimeParseException excp) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Return the first millisecond of the local day DAY, as YYYY-MM-DD.
+     *  Throws DateTimeParseException if DAY is malformed. */
+    static long startOfDay(String day) {
+        return LocalDate.parse(day).atStartOfDay(ZoneId.systemDefault())
+            .toInstant().toEpochMilli();
+    }
+
+    /** Return the last millisecond of the local day DAY, as YYYY-MM-DD.
+     *  Throws DateTimeParseException if DAY is malformed. */
+    static long endOfDay(String day) {
+        return LocalDate.parse(day).plusDays(1)
+            .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1;
+    }
+
+    /** Return the largest number of commits shown. */
+    int limit() {
+        return this.limit;
+    }
+
+    /** Return true iff a commit made at TIME is before the range shown. */
+    boolean before(long time) {
+        return time < this.since;
+    }
+
+    /** Return true iff a commit made at TIME is in the range shown. */
+    boolean shows(long time) {
+        return time >= this.since && time <= this.until;
+    }
+
+    /** Return true iff each commit is shown on one line. */
+    boolean oneline() {
+        return this.oneline;
+    }
+
+}
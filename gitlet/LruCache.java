@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A cache holding entries up to a total weight, which evicts the least
+ *  recently used entries to make room for a new one.  Each entry has the
+ *  weight given when it was put, 1 by default, so a cache can be bounded
+ *  either by its number of entries or by an estimate of their size.
+ *  @author Kelvin Mo
+ */
+class LruCache<K, V> {
+
+    /** One cached value with its weight. */
+    private static class Slot<V> {
+        /** The cached value. */
+        private final V value;
+        /** Weight of VALUE. */
+        private final long weight;
+
+        /** A slot holding VALUE of the given WEIGHT. */
+        Slot(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** The entries, least recently used first. */
+    private final LinkedHashMap<K, Slot<V>> entries;
+
+    /** Largest total weight kept. */
+    private final long capacity;
+
+    /** Total weight of the entries. */
+    private long weight;
+
+    /** Number of lookups that found an entry. */
+    private long hits;
+
+    /** Number of lookups that found none. */
+    private long misses;
+
+    /** An empty cache holding entries of total weight at most CAPACITY. */
+    LruCache(long capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.capacity = capacity;
+    }
+
+    /** Return the value cached for KEY, or null. */
+    V get(K key) {
+        Slot<V> slot = this.entries.get(key);
+        if (slot == null) {
+            this.misses += 1;
+            return null;
+        }
+        this.hits += 1;
+        return slot.value;
+    }
+
+    /** Cache VALUE for KEY with weight 1. */
+    void put(K key, V value) {
+        put(key, value, 1);
+    }
+
+    /** Cache VALUE for KEY with the given WEIGHT, evicting the least
+     *  recently used entries until the total fits.  A value heavier than
+     *  the whole cache is not kept. */
+    void put(K key, V value, long weight) {
+        remove(key);
+        if (weight > this.capacity) {
+            return;
+        }
+        this.entries.put(key, new Slot<>(value, weight));
+        this.weight += weight;
+        Iterator<Map.Entry<K, Slot<V>>> eldest =
+            this.entries.entrySet().iterator();
+        while (this.weight > this.capacity) {
+            this.weight -= eldest.next().getValue().weight;
+            eldest.remove();
+        }
+    }
+
+    /** Drop the entry for KEY, if any. */
+    void remove(K key) {
+        Slot<V> slot = this.entries.remove(key);
+        if (slot != null) {
+            this.weight -= slot.weight;
+        }
+    }
+
+    /** Drop every entry. */
+    void clear() {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    /** Return the number of entries. */
+    int size() {
+        return this.entries.size();
+    }
+
+    /** Return the total weight of the entries. */
+    long weight() {
+        return this.weight;
+    }
+
+    /** Return the number of lookups that found an entry. */
+    long hits() {
+        return this.hits;
+    }
+
+    /** Return the number of lookups that found none. */
+    long misses() {
+        return this.misses;
+    }
+
+    /** Start counting hits and misses afresh. */
+    void resetCounts() {
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+}
@@ -1,21 +1,92 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Kelvin Mo
  */
 public class Main {
 
+    /** Size of the buffer holding output until it is written. */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  <COMMAND> <OPERAND> ....  Output is buffered, so that commands
+     *  printing many lines make few writes. */
     public static void main(String[] args) {
+        System.setOut(new PrintStream(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE)));
+        try {
+            command(args);
+        } finally {
+            System.out.flush();
+        }
+    }
+
+    /** Run the command in ARGS, forwarding it to a daemon if one is
+     *  running. */
+    private static void command(String[] args) {
         if (args.length == 0) {
             System.out.println("Please enter a command.");
             return;
         }
-        File gitlet = new File(".gitlet");
-        Repository repo = new Repository();
+        if (args[0].equals("migrate")) {
+            if (argCheck()) {
+                RepoLock lock = RepoLock.forCommand(args);
+                try {
+                    Repository.migrate();
+                } finally {
+                    lock.close();
+                }
+            }
+            return;
+        }
+        if (args[0].equals("daemon")) {
+            if (argCheck()) {
+                daemon(args);
+            }
+            return;
+        }
+        if (!args[0].equals("init") && Daemon.forward(args)) {
+            return;
+        }
+        try {
+            RepoLock lock = RepoLock.forCommand(args);
+            try {
+                run(new Repository(), args);
+            } finally {
+                lock.close();
+            }
+        } catch (GitletException excp) {
+            exitWithError(excp.getMessage());
+        }
+    }
+
+    /** Run the command in ARGS on REPO, committing its writes only if it
+     *  completes, and reporting its metrics if they are enabled. */
+    static void run(Repository repo, String[] args) {
+        long start = Metrics.start();
+        try {
+            dispatch(repo, args);
+            repo.finish();
+        } catch (RuntimeException excp) {
+            repo.abandon();
+            throw excp;
+        } finally {
+            if (Metrics.ENABLED) {
+                repo.recordCaches();
+            }
+            Metrics.report(args, start);
+        }
+    }
+
+    /** Run the command in ARGS on REPO. */
+    private static void dispatch(Repository repo, String[] args) {
         switch (args[0]) {
         case "init":
             repo.init();
@@ -24,7 +95,7 @@ public class Main {
             if (!argCheck()) {
                 break;
             }
-            repo.add(args[1]);
+            repo.add(Arrays.copyOfRange(args, 1, args.length));
             break;
         case "commit":
             if (!argCheck()) {
@@ -42,19 +113,19 @@ public class Main {
             if (!argCheck()) {
                 break;
             }
-            repo.log();
+            repo.log(args);
             break;
         case "global-log":
             if (!argCheck()) {
                 break;
             }
-            repo.global_log();
+            repo.global_log(args);
             break;
         case "find":
             if (!argCheck()) {
                 break;
             }
-            repo.find(args[1]);
+            repo.find(args);
             break;
         case "status":
             if (!argCheck()) {
@@ -92,6 +163,54 @@ public class Main {
             }
             repo.merge(args[1]);
             break;
+        case "merge-base":
+            if (!argCheck() || !operands(args, 2)) {
+                break;
+            }
+            repo.merge_base(args[1], args[2]);
+            break;
+        case "repack":
+            if (!argCheck()) {
+                break;
+            }
+            repo.repack();
+            break;
+        case "gc":
+            if (!argCheck()) {
+                break;
+            }
+            repo.gc(args);
+            break;
+        case "add-remote":
+            if (!argCheck() || !operands(args, 2)) {
+                break;
+            }
+            repo.add_remote(args[1], args[2]);
+            break;
+        case "rm-remote":
+            if (!argCheck() || !operands(args, 1)) {
+                break;
+            }
+            repo.rm_remote(args[1]);
+            break;
+        case "push":
+            if (!argCheck() || !operands(args, 2)) {
+                break;
+            }
+            repo.push(args[1], args[2]);
+            break;
+        case "fetch":
+            if (!argCheck() || !operands(args, 2)) {
+                break;
+            }
+            repo.fetch(args[1], args[2]);
+            break;
+        case "pull":
+            if (!argCheck() || !operands(args, 2)) {
+                break;
+            }
+            repo.pull(args[1], args[2]);
+            break;
         default:
             System.out.println("No command with that name exists.");
             return;
@@ -100,13 +219,36 @@ public class Main {
     }
 
 
+    /** Start a daemon serving the current repository, or stop the
+     *  running one if ARGS is "daemon stop". */
+    private static void daemon(String[] args) {
+        if (args.length > 1 && args[1].equals("stop")) {
+            if (!Daemon.forward(args)) {
+                System.out.println("No daemon is running.");
+            }
+            return;
+        }
+        Daemon.serve();
+    }
+
     public static void exitWithError(String message) {
         if (message != null && !message.equals("")) {
             System.out.println(message);
         }
+        System.out.flush();
         System.exit(-1);
     }
 
+    /** Return true iff ARGS holds a command and exactly N operands,
+     *  printing an error message otherwise. */
+    private static boolean operands(String[] args, int n) {
+        if (args.length != n + 1) {
+            System.out.println("Incorrect operands.");
+            return false;
+        }
+        return true;
+    }
+
     public static boolean argCheck() {
         if(!new File(".gitlet").exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
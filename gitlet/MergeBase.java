@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/** Finds the best common ancestors of two commits.  Both commits are
+ *  walked at once over all their parents, newest first, marking each
+ *  commit with the sides it is reachable from.  A commit reached from both
+ *  sides is a common ancestor; everything below it is marked stale, and
+ *  the walk ends as soon as only stale commits are left, so its cost is
+ *  linear in the commits it visits.
+ *
+ *  When both commits are in the commit graph, parents and generation
+ *  numbers come from the graph and no commit is read.  Otherwise commits
+ *  are read, normally through the cache of an ObjectDatabase, and
+ *  ordered by time.
+ *  @author Kelvin Mo
+ */
+class MergeBase {
+
+    /** Flag of commits reachable from the first commit. */
+    private static final int FROM_A = 1;
+
+    /** Flag of commits reachable from the second commit. */
+    private static final int FROM_B = 2;
+
+    /** Flag of commits below a common ancestor already found. */
+    private static final int STALE = 4;
+
+    /** The commit graph, or null if there is none. */
+    private final CommitGraph graph;
+
+    /** Reads commits that are not in the graph. */
+    private final Function<String, Commit> reader;
+
+    /** An engine using GRAPH, which may be null, and reading commits with
+     *  READER. */
+    MergeBase(CommitGraph graph, Function<String, Commit> reader) {
+        this.graph = graph;
+        this.reader = reader;
+    }
+
+    /** Return the best common ancestors of commits A and B, latest first:
+     *  the common ancestors that are not ancestors of another common
+     *  ancestor.  Returns an empty list if A and B share no history. */
+    List<String> find(String a, String b) {
+        boolean useGraph = this.graph != null
+            && this.graph.contains(a) && this.graph.contains(b);
+        HashMap<String, Integer> flags = new HashMap<>();
+        PriorityQueue<String> queue = new PriorityQueue<>(
+            (x, y) -> compareNewest(x, y, useGraph));
+        flags.put(a, FROM_A);
+        flags.merge(b, FROM_B, (x, y) -> x | y);
+        queue.add(a);
+        if (!a.equals(b)) {
+            queue.add(b);
+        }
+        int live = queue.size();
+        ArrayList<String> result = new ArrayList<>();
+        while (live > 0 && !queue.isEmpty()) {
+            String hash = queue.poll();
+            int f = flags.get(hash);
+            if ((f & STALE) == 0) {
+                live -= 1;
+            }
+            if ((f & (FROM_A | FROM_B)) == (FROM_A | FROM_B)
+                && (f & STALE) == 0) {
+                result.add(hash);
+                f |= STALE;
+            }
+            for (String parent : parents(hash, useGraph)) {
+                Integer old = flags.get(parent);
+                int updated = (old == null ? 0 : old) | f;
+                if (old != null && updated == old) {
+                    continue;
+                }
+                flags.put(parent, updated);
+                if (old == null) {
+                    queue.add(parent);
+                    if ((updated & STALE) == 0) {
+                        live += 1;
+                    }
+                } else if ((old & STALE) == 0 && (updated & STALE) != 0) {
+                    live -= 1;
+                }
+            }
+        }
+        if (!useGraph && result.size() > 1) {
+            result = reduce(result);
+        }
+        return result;
+    }
+
+    /** Return true iff commit A is an ancestor of commit B, or is B. */
+    boolean isAncestor(String a, String b) {
+        if (this.graph != null && this.graph.contains(a)
+            && this.graph.contains(b)) {
+            return this.graph.isAncestor(a, b);
+        }
+        return find(a, b).contains(a);
+    }
+
+    /** Return CANDIDATES without those that are ancestors of another. */
+    private ArrayList<String> reduce(List<String> candidates) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String c : candidates) {
+            boolean redundant = false;
+            for (String d : candidates) {
+                if (!c.equals(d) && find(c, d).contains(c)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(c);
+            }
+        }
+        return result;
+    }
+
+    /** Compare commits X and Y so that the newer comes first: by
+     *  generation and then time if USEGRAPH, and by time otherwise. */
+    private int compareNewest(String x, String y, boolean useGraph) {
+        if (useGraph) {
+            int c = Integer.compare(this.graph.generation(y),
+                                    this.graph.generation(x));
+            if (c != 0) {
+                return c;
+            }
+            return Long.compare(this.graph.time(y), this.graph.time(x));
+        }
+        return Long.compare(this.reader.apply(y).getTime(),
+                            this.reader.apply(x).getTime());
+    }
+
+    /** Return the parents of commit HASH, from the graph if USEGRAPH. */
+    private List<String> parents(String hash, boolean useGraph) {
+        return useGraph ? this.graph.parents(hash)
+            : this.reader.apply(hash).getAllParents();
+    }
+
+}
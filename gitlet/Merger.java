@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** A three-way merge of the files of two commits against their split
+ *  point.  A file changed on only one side since the split point takes
+ *  that side's version, found by comparing blob hashes alone.  Only files
+ *  changed differently on both sides are read, and their lines are merged
+ *  as diff3 does: regions changed on one side take that side, and regions
+ *  changed differently on both sides are written between conflict
+ *  markers.  Those files are merged in parallel, after their blobs are
+ *  read in turn.
+ *  @author Kelvin Mo
+ */
+class Merger {
+
+    /** Line starting the current side of a conflict. */
+    static final String CURRENT_MARKER = "<<<<<<< HEAD\n";
+
+    /** Line separating the two sides of a conflict. */
+    static final String SEPARATOR = "=======\n";
+
+    /** Line ending the given side of a conflict. */
+    static final String GIVEN_MARKER = ">>>>>>>\n";
+
+    /** The merged contents of one file. */
+    private static class Merged {
+        /** The merged bytes. */
+        private final byte[] contents;
+        /** True iff some region conflicted. */
+        private final boolean conflict;
+
+        /** Merged CONTENTS, which hold conflict markers iff CONFLICT. */
+        Merged(byte[] contents, boolean conflict) {
+            this.contents = contents;
+            this.conflict = conflict;
+        }
+    }
+
+    /** The database holding the commits' trees and blobs. */
+    private final ObjectDatabase db;
+
+    /** A treemap from the path of every file merged line by line to its
+     *  merged contents. */
+    private TreeMap<String, byte[]> contents = new TreeMap<>();
+
+    /** Paths of the files whose merge conflicted. */
+    private TreeSet<String> conflicts = new TreeSet<>();
+
+    /** A merger of trees and blobs in DB. */
+    Merger(ObjectDatabase db) {
+        this.db = db;
+    }
+
+    /** Merge the tree GIVEN into the tree CURRENT, whose split point is
+     *  the tree SPLIT, and return the changes that turn CURRENT into the
+     *  result, in the form taken by Tree.update.  Paths mapped to a hash
+     *  found in contents() are new blobs not yet stored. */
+    TreeMap<String, String> merge(String split, String current, String given) {
+        TreeMap<String, String> ours = Tree.diff(this.db, split, current);
+        TreeMap<String, String> theirs = Tree.diff(this.db, split, given);
+        TreeMap<String, String> result = new TreeMap<>();
+        ArrayList<String> both = new ArrayList<>();
+        for (Map.Entry<String, String> change : theirs.entrySet()) {
+            String path = change.getKey();
+            if (!ours.containsKey(path)) {
+                result.put(path, change.getValue());
+            } else if (!same(ours.get(path), change.getValue())) {
+                both.add(path);
+            }
+        }
+
+        HashMap<String, List<List<String>>> texts = new HashMap<>();
+        for (String path : both) {
+            texts.put(path, List.of(lines(Tree.lookup(this.db, split, path)),
+                                    lines(ours.get(path)),
+                                    lines(theirs.get(path))));
+        }
+        Map<String, Merged> merged = new TreeMap<>();
+        both.parallelStream()
+            .map(path -> Map.entry(path, mergeLines(texts.get(path))))
+            .forEachOrdered(e -> merged.put(e.getKey(), e.getValue()));
+
+        for (Map.Entry<String, Merged> e : merged.entrySet()) {
+            String path = e.getKey();
+            byte[] bytes = e.getValue().contents;
+            if (e.getValue().conflict) {
+                this.conflicts.add(path);
+            }
+            String hash = Utils.sha1(bytes);
+            if (!hash.equals(ours.get(path))) {
+                this.contents.put(path, bytes);
+                result.put(path, hash);
+            }
+        }
+        return result;
+    }
+
+    /** Return a treemap from the path of every file merged line by line,
+     *  and changed by the merge, to its merged contents. */
+    TreeMap<String, byte[]> contents() {
+        return this.contents;
+    }
+
+    /** Return the paths of the files whose merge conflicted. */
+    TreeSet<String> conflicts() {
+        return this.conflicts;
+    }
+
+    /** Return true iff blob hashes A and B, either of which may be null,
+     *  are equal. */
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /** Return the lines of blob HASH, or no lines if HASH is null. */
+    private List<String> lines(String hash) {
+        if (hash == null) {
+            return List.of();
+        }
+        byte[] data = this.db.readBlob(hash);
+        return data.length == 0 ? List.of()
+            : Delta.lines(data, Delta.lineStarts(data));
+    }
+
+    /** Return the merge of the lines in TEXTS, which are those of the
+     *  split point, the current side and the given side, in that order. */
+    private static Merged mergeLines(List<List<String>> texts) {
+        List<String> base = texts.get(0);
+        List<String> ours = texts.get(1);
+        List<String> theirs = texts.get(2);
+        int[] toOurs = matches(base, ours);
+        int[] toTheirs = matches(base, theirs);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean conflict = false;
+        int b = 0, o = 0, t = 0;
+        for (int k = 0; k <= base.size(); k += 1) {
+            int nextOurs, nextTheirs;
+            if (k == base.size()) {
+                nextOurs = ours.size();
+                nextTheirs = theirs.size();
+            } else if (toOurs[k] >= 0 && toTheirs[k] >= 0) {
+                nextOurs = toOurs[k];
+                nextTheirs = toTheirs[k];
+            } else {
+                continue;
+            }
+            List<String> baseRegion = base.subList(b, k);
+            List<String> ourRegion = ours.subList(o, nextOurs);
+            List<String> theirRegion = theirs.subList(t, nextTheirs);
+            if (ourRegion.equals(baseRegion) || ourRegion.equals(theirRegion)) {
+                write(out, theirRegion);
+            } else if (theirRegion.equals(baseRegion)) {
+                write(out, ourRegion);
+            } else {
+                conflict = true;
+                write(out, List.of(CURRENT_MARKER));
+                writeSide(out, ourRegion);
+                write(out, List.of(SEPARATOR));
+                writeSide(out, theirRegion);
+                write(out, List.of(GIVEN_MARKER));
+            }
+            if (k < base.size()) {
+                write(out, List.of(base.get(k)));
+            }
+            b = k + 1;
+            o = nextOurs + 1;
+            t = nextTheirs + 1;
+        }
+        return new Merged(out.toByteArray(), conflict);
+    }
+
+    /** Return, for each line of BASE, the index of the line of OTHER it is
+     *  matched with in their longest common subsequence, or -1. */
+    private static int[] matches(List<String> base, List<String> other) {
+        int[] result = new int[base.size()];
+        Arrays.fill(result, -1);
+        MyersDiff diff = new MyersDiff();
+        diff.setSequences(base, other);
+        int[] common = diff.commonSubsequence();
+        for (int k = 0; k < common.length; k += 3) {
+            for (int i = 0; i < common[k + 2]; i += 1) {
+                result[common[k] + i] = common[k + 1] + i;
+            }
+        }
+        return result;
+    }
+
+    /** Write LINES, each holding one char per byte, to OUT. */
+    private static void write(ByteArrayOutputStream out, List<String> lines) {
+        for (String line : lines) {
+            out.writeBytes(line.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /** Write LINES, one side of a conflict, to OUT, ending the last with a
+     *  newline if it lacks one so the marker after it stays on its own
+     *  line. */
+    private static void writeSide(ByteArrayOutputStream out,
+                                  List<String> lines) {
+        write(out, lines);
+        if (!lines.isEmpty() && !lines.get(lines.size() - 1).endsWith("\n")) {
+            out.write('\n');
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Counters and timers of the operations that dominate the cost of
+ *  commands: hashing, reading and writing files, listing directories and
+ *  decoding objects.  Each operation records its calls, bytes and time.
+ *
+ *  Nothing is recorded unless the environment variable GITLET_TRACE is
+ *  set when gitlet starts, so that the disabled cost is one test of a
+ *  constant.  If it is "json", a JSON object describing each command is
+ *  printed on one line of the standard error when the command finishes;
+ *  for any other value, a table is printed there instead.  Either also
+ *  gives the hits and misses of each object cache during the command and
+ *  how many objects and bytes it held at the end, which shows how well
+ *  GITLET_CACHE_BYTES and GITLET_CACHE_BLOB_BYTES suit a repository.  The
+ *  commands run by a daemon are traced if the daemon was started with the
+ *  variable set.
+ *  @author Kelvin Mo
+ */
+class Metrics {
+
+    /** The operations measured. */
+    enum Op {
+        /** Utils.sha1 of bytes, strings or a file. */
+        SHA1("sha1"),
+        /** Utils.readContents. */
+        READ_CONTENTS("readContents"),
+        /** Utils.writeContents. */
+        WRITE_CONTENTS("writeContents"),
+        /** Utils.readObject. */
+        READ_OBJECT("readObject"),
+        /** Utils.plainFilenamesIn. */
+        LIST_DIR("plainFilenamesIn"),
+        /** Reads of whole objects from an ObjectStore. */
+        STORE_READ("storeRead"),
+        /** Decodings of commits. */
+        COMMIT_DECODE("commitDecode"),
+        /** Decodings of trees. */
+        TREE_DECODE("treeDecode");
+
+        /** Name of the operation in reports. */
+        private final String label;
+
+        /** An operation reported as LABEL. */
+        Op(String label) {
+            this.label = label;
+        }
+    }
+
+    /** The value of GITLET_TRACE, or null if tracing is off. */
+    private static final String MODE = System.getenv("GITLET_TRACE");
+
+    /** True iff operations are recorded. */
+    static final boolean ENABLED = MODE != null && !MODE.isEmpty();
+
+    /** Number of calls of each operation, by ordinal. */
+    private static final AtomicLongArray CALLS =
+        new AtomicLongArray(Op.values().length);
+
+    /** Bytes processed by each operation, by ordinal. */
+    private static final AtomicLongArray BYTES =
+        new AtomicLongArray(Op.values().length);
+
+    /** Nanoseconds spent in each operation, by ordinal. */
+    private static final AtomicLongArray NANOS =
+        new AtomicLongArray(Op.values().length);
+
+    /** For each object cache since the last report, its name followed by
+     *  its hits, misses, entries and bytes. */
+    private static final List<Object[]> CACHES = new ArrayList<>();
+
+    /** Return the start time of an operation, or 0 if nothing is
+     *  recorded. */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /** Record a call of OP that began at START and processed BYTES
+     *  bytes. */
+    static void record(Op op, long start, long bytes) {
+        if (ENABLED) {
+            int i = op.ordinal();
+            CALLS.incrementAndGet(i);
+            BYTES.addAndGet(i, bytes);
+            NANOS.addAndGet(i, System.nanoTime() - start);
+        }
+    }
+
+    /** Record that the object cache NAME had HITS hits and MISSES misses
+     *  and now holds ENTRIES objects of BYTES bytes. */
+    static synchronized void cache(String name, long hits, long misses,
+                                   long entries, long bytes) {
+        if (ENABLED) {
+            CACHES.add(new Object[] {name, hits, misses, entries, bytes});
+        }
+    }
+
+    /** Print what was recorded since the last report, for the command
+     *  ARGS begun at START, and start counting afresh. */
+    static synchronized void report(String[] args, long start) {
+        if (!ENABLED) {
+            return;
+        }
+        long total = System.nanoTime() - start;
+        PrintStream err = System.err;
+        if (MODE.equals("json")) {
+            StringBuilder line = new StringBuilder();
+            line.append("{\"command\":").append(quote(String.join(" ", args)))
+                .append(",\"ms\":").append(millis(total)).append(",\"ops\":{");
+            String sep = "";
+            for (Op op : Op.values()) {
+                int i = op.ordinal();
+                if (CALLS.get(i) > 0) {
+                    line.append(sep).append(quote(op.label))
+                        .append(":{\"calls\":").append(CALLS.get(i))
+                        .append(",\"bytes\":").append(BYTES.get(i))
+                        .append(",\"ms\":").append(millis(NANOS.get(i)))
+                        .append('}');
+                    sep = ",";
+                }
+            }
+            line.append("},\"caches\":{");
+            sep = "";
+            for (Object[] c : CACHES) {
+                line.append(sep).append(quote((String) c[0]))
+                    .append(":{\"hits\":").append(c[1])
+                    .append(",\"misses\":").append(c[2])
+                    .append(",\"entries\":").append(c[3])
+                    .append(",\"bytes\":").append(c[4]).append('}');
+                sep = ",";
+            }
+            err.println(line.append("}}"));
+        } else {
+            err.printf("[trace] %s: %s ms%n", String.join(" ", args),
+                       millis(total));
+            for (Op op : Op.values()) {
+                int i = op.ordinal();
+                if (CALLS.get(i) > 0) {
+                    err.printf("[trace]   %-16s %8d calls %12d bytes %10s ms%n",
+                               op.label, CALLS.get(i), BYTES.get(i),
+                               millis(NANOS.get(i)));
+                }
+            }
+            for (Object[] c : CACHES) {
+                err.printf("[trace]   %-16s %8d hits %8d misses %8d cached %12d bytes%n",
+                           "cache " + c[0], c[1], c[2], c[3], c[4]);
+            }
+        }
+        CACHES.clear();
+        for (int i = 0; i < CALLS.length(); i += 1) {
+            CALLS.set(i, 0);
+            BYTES.set(i, 0);
+            NANOS.set(i, 0);
+        }
+    }
+
+    /** Return NANOS as milliseconds with three decimals. */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /** Return S as a JSON string. */
+    private static String quote(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+}
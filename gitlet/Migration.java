@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/** Conversion of repositories written by older versions of gitlet to the
+ *  current encodings of Commit and Staging.  Commits and the staging area
+ *  may have been written with Java serialization, and commits may also be
+ *  in the first binary encoding, which held a flat file mapping instead of
+ *  a Tree.  Since a commit's hash is the hash of its encoding, every
+ *  commit gets a new hash, so commits are rewritten parents first and the
+ *  branches are moved to the rewritten commits.
+ *  @author Kelvin Mo
+ */
+class Migration {
+
+    /** The fields of a commit as Java serialization wrote them. */
+    static class LegacyCommit implements Serializable {
+        /** The serial version of the original Commit class. */
+        private static final long serialVersionUID = -7297671299765386484L;
+        /** Hash code of the commit object (UID). */
+        private String hash;
+        /** Hash code of the parent of the commit object. */
+        private String parentHash;
+        /** Timestamp of the commit object being created. */
+        private String timestamp;
+        /** Commit message being passed in. */
+        private String message;
+        /** A treemap to save both the filenames and its blob hashcode. */
+        private TreeMap<String, String> mapping;
+        /** An arraylst to record all the parents of one commit. */
+        private ArrayList<String> allParents;
+    }
+
+    /** The fields of a staging area as Java serialization wrote them. */
+    static class LegacyStaging implements Serializable {
+        /** The serial version of the original Staging class. */
+        private static final long serialVersionUID = -796449678462629158L;
+        /** A treemap to record the filename and hashcode added to stage. */
+        private TreeMap<String, String> addition;
+        /** A treemap to record the filename and hashcode removed from
+         *  stage. */
+        private TreeMap<String, String> removal;
+    }
+
+    /** The contents of a commit in any older format. */
+    private static class OldCommit {
+        /** Commit message. */
+        private String message;
+        /** Time the commit was made, in milliseconds. */
+        private long time;
+        /** Hashes of the parents, first parent first. */
+        private List<String> parents;
+        /** A treemap from file names to their blob hashes. */
+        private TreeMap<String, String> mapping;
+    }
+
+    /** Format version of the first binary commit encoding. */
+    static final int FLAT_VERSION = 1;
+
+    /** An object stream that reads the original Commit and Staging classes
+     *  as LegacyCommit and LegacyStaging. */
+    private static class LegacyInputStream extends ObjectInputStream {
+        /** A stream reading objects from IN. */
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            switch (desc.getName()) {
+            case "gitlet.Commit":
+                return ObjectStreamClass.lookup(LegacyCommit.class);
+            case "gitlet.Staging":
+                return ObjectStreamClass.lookup(LegacyStaging.class);
+            default:
+                return desc;
+            }
+        }
+    }
+
+    /** Return true iff BYTES were written by Java serialization. */
+    static boolean isLegacy(byte[] bytes) {
+        return bytes.length >= 2 && (bytes[0] & 0xff) == 0xac
+            && (bytes[1] & 0xff) == 0xed;
+    }
+
+    /** Return the object of type T serialized in BYTES. */
+    private static <T> T readLegacy(byte[] bytes, Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                 new LegacyInputStream(new ByteArrayInputStream(bytes))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Rewrite every old commit in COMMITS, with its files as trees in
+     *  DB, move the branches in BRANCHES that point to them, and rewrite
+     *  the staging area in STAGEFILE in the current encoding, through
+     *  JOURNAL, which is committed before the old commits are deleted.
+     *  Return the number of commits rewritten. */
+    static int migrate(ObjectStore commits, ObjectDatabase db, Journal journal,
+                       File branches, File stageFile) {
+        HashMap<String, OldCommit> legacy = new HashMap<>();
+        for (String hash : commits.list()) {
+            byte[] bytes = commits.read(hash);
+            if (isLegacy(bytes)) {
+                legacy.put(hash, convert(readLegacy(bytes, LegacyCommit.class)));
+            } else if (bytes.length > 0 && bytes[0] == FLAT_VERSION) {
+                legacy.put(hash, readFlat(bytes));
+            }
+        }
+
+        HashMap<String, String> renamed = new HashMap<>();
+        for (String start : legacy.keySet()) {
+            ArrayDeque<String> todo = new ArrayDeque<>();
+            todo.push(start);
+            while (!todo.isEmpty()) {
+                String hash = todo.peek();
+                if (renamed.containsKey(hash) || !legacy.containsKey(hash)) {
+                    todo.pop();
+                    continue;
+                }
+                List<String> parents = legacy.get(hash).parents;
+                boolean ready = true;
+                for (String parent : parents) {
+                    if (legacy.containsKey(parent)
+                        && !renamed.containsKey(parent)) {
+                        todo.push(parent);
+                        ready = false;
+                    }
+                }
+                if (!ready) {
+                    continue;
+                }
+                todo.pop();
+                ArrayList<String> newParents = new ArrayList<>();
+                for (String parent : parents) {
+                    newParents.add(renamed.getOrDefault(parent, parent));
+                }
+                OldCommit old = legacy.get(hash);
+                Commit converted = new Commit(old.message, old.time, newParents,
+                                              Tree.write(db, old.mapping));
+                commits.put(converted.getHash(), converted.encode());
+                renamed.put(hash, converted.getHash());
+            }
+        }
+
+        for (String branch : Utils.plainFilenamesIn(branches)) {
+            File ref = Utils.join(branches, branch);
+            String target = Utils.readContentsAsString(ref);
+            if (renamed.containsKey(target)) {
+                journal.write(ref, renamed.get(target));
+            }
+        }
+
+        byte[] stage = Utils.readContents(stageFile);
+        if (isLegacy(stage)) {
+            LegacyStaging old = readLegacy(stage, LegacyStaging.class);
+            Staging converted = new Staging();
+            converted.getAddition().putAll(old.addition);
+            converted.getRemoval().putAll(old.removal);
+            journal.write(stageFile, converted.encode());
+        }
+
+        journal.commit();
+        commits.delete(new HashSet<>(legacy.keySet()),
+                       new HashMap<String, String>());
+        return legacy.size();
+    }
+
+    /** Return the contents of the serialized commit C. */
+    private static OldCommit convert(LegacyCommit c) {
+        OldCommit result = new OldCommit();
+        result.message = c.message;
+        result.time = parseTime(c.timestamp);
+        result.mapping = c.mapping;
+        result.parents = new ArrayList<>();
+        for (String parent : c.allParents) {
+            if (parent != null && !result.parents.contains(parent)) {
+                result.parents.add(parent);
+            }
+        }
+        return result;
+    }
+
+    /** Return the contents of the commit encoded in BYTES in the first
+     *  binary encoding: the version, time, message, parents and then the
+     *  flat file mapping. */
+    private static OldCommit readFlat(byte[] bytes) {
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(bytes));
+            in.readByte();
+            OldCommit result = new OldCommit();
+            result.time = in.readLong();
+            result.message = Commit.readString(in);
+            int numParents = in.readUnsignedByte();
+            result.parents = new ArrayList<>();
+            for (int i = 0; i < numParents; i += 1) {
+                result.parents.add(Pack.toHex(in.readNBytes(Pack.HASH_BYTES)));
+            }
+            result.mapping = new TreeMap<>();
+            int size = in.readInt();
+            for (int i = 0; i < size; i += 1) {
+                String name = Commit.readString(in);
+                result.mapping.put(name, Pack.toHex(in.readNBytes(Pack.HASH_BYTES)));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the time in milliseconds denoted by the formatted TIMESTAMP. */
+    private static long parseTime(String timestamp) {
+        try {
+            SimpleDateFormat ts = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
+            return ts.parse(timestamp).getTime();
+        } catch (ParseException excp) {
+            throw Utils.error("Bad timestamp %s.", timestamp);
+        }
+    }
+
+}
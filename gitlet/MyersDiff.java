@@ -0,0 +1,244 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** A Diff that finds its common subsequence with Myers' O(ND) algorithm
+ *  in linear space, where N is the total length of the sequences and D
+ *  the size of the shortest edit between them.  Lines are first interned
+ *  to int ids, so each comparison is a single int test.  Each subproblem
+ *  drops its common prefix and suffix, then is split at the middle of
+ *  its shortest edit path, found by searching forward from its start and
+ *  backward from its end at once.  The superclass remains the reference
+ *  implementation.
+ *  @author Kelvin Mo
+ */
+public class MyersDiff extends Diff {
+
+    @Override
+    public int lls(int k1, int k2) {
+        k1 = Math.min(k1, sequence1().size());
+        k2 = Math.min(k2, sequence2().size());
+        if (k1 == sequence1().size() && k2 == sequence2().size()) {
+            return lls();
+        }
+        MyersDiff prefixes = new MyersDiff();
+        prefixes.setSequences(sequence1().subList(0, k1),
+                              sequence2().subList(0, k2));
+        return prefixes.lls();
+    }
+
+    @Override
+    public int lls() {
+        int[] common = commonSubsequence();
+        int result = 0;
+        for (int k = 2; k < common.length; k += 3) {
+            result += common[k];
+        }
+        return result;
+    }
+
+    @Override
+    public boolean sequencesEqual() {
+        return sequence1().equals(sequence2());
+    }
+
+    @Override
+    public int[] commonSubsequence() {
+        if (_common == null || _source1 != sequence1()
+            || _source2 != sequence2()) {
+            _source1 = sequence1();
+            _source2 = sequence2();
+            _common = compute();
+        }
+        return _common.clone();
+    }
+
+    /** Return the common subsequence of the current sequences in the form
+     *  described by commonSubsequence. */
+    private int[] compute() {
+        HashMap<String, Integer> ids = new HashMap<>();
+        _a = intern(sequence1(), ids);
+        _b = intern(sequence2(), ids);
+        _runs = new ArrayList<>();
+        ArrayDeque<int[]> todo = new ArrayDeque<>();
+        todo.push(new int[] {0, _a.length, 0, _b.length});
+        while (!todo.isEmpty()) {
+            int[] range = todo.pop();
+            int[] split = split(range[0], range[1], range[2], range[3]);
+            if (split != null) {
+                todo.push(new int[] {split[0], split[1], split[2], split[3]});
+                todo.push(new int[] {split[4], split[5], split[6], split[7]});
+            }
+        }
+        _runs.sort((x, y) -> Integer.compare(x[0], y[0]));
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int[] run : _runs) {
+            int n = result.size();
+            if (n > 0 && result.get(n - 3) + result.get(n - 1) == run[0]
+                && result.get(n - 2) + result.get(n - 1) == run[1]) {
+                result.set(n - 1, result.get(n - 1) + run[2]);
+            } else {
+                result.add(run[0]);
+                result.add(run[1]);
+                result.add(run[2]);
+            }
+        }
+        _a = _b = null;
+        _runs = null;
+        int[] common = new int[result.size()];
+        for (int i = 0; i < common.length; i += 1) {
+            common[i] = result.get(i);
+        }
+        return common;
+    }
+
+    /** Return the ids of the items of LINES, giving each distinct line the
+     *  next unused id in IDS. */
+    private static int[] intern(List<String> lines, HashMap<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        int i = 0;
+        for (String line : lines) {
+            Integer id = ids.get(line);
+            if (id == null) {
+                id = ids.size();
+                ids.put(line, id);
+            }
+            result[i] = id;
+            i += 1;
+        }
+        return result;
+    }
+
+    /** Record the common prefix and suffix of _a[ALO .. AHI-1] and
+     *  _b[BLO .. BHI-1] as runs, and return the two subproblems left
+     *  between them, as eight bounds, or null if nothing is left to
+     *  match. */
+    private int[] split(int aLo, int aHi, int bLo, int bHi) {
+        int prefix = 0;
+        while (aLo + prefix < aHi && bLo + prefix < bHi
+               && _a[aLo + prefix] == _b[bLo + prefix]) {
+            prefix += 1;
+        }
+        if (prefix > 0) {
+            _runs.add(new int[] {aLo, bLo, prefix});
+            aLo += prefix;
+            bLo += prefix;
+        }
+        int suffix = 0;
+        while (aHi - suffix > aLo && bHi - suffix > bLo
+               && _a[aHi - suffix - 1] == _b[bHi - suffix - 1]) {
+            suffix += 1;
+        }
+        if (suffix > 0) {
+            aHi -= suffix;
+            bHi -= suffix;
+            _runs.add(new int[] {aHi, bHi, suffix});
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return null;
+        }
+        int[] middle = middle(aLo, aHi, bLo, bHi);
+        if (middle == null) {
+            return null;
+        }
+        int x = aLo + middle[0], y = bLo + middle[1];
+        if ((x == aLo && y == bLo) || (x == aHi && y == bHi)) {
+            return null;
+        }
+        return new int[] {aLo, x, bLo, y, x, aHi, y, bHi};
+    }
+
+    /** Return the point, relative to (ALO, BLO), at which the forward and
+     *  backward searches for the shortest edit from _a[ALO .. AHI-1] to
+     *  _b[BLO .. BHI-1] first overlap, or null if the two have nothing in
+     *  common.  The ends of both ranges must differ. */
+    private int[] middle(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int[] forward = new int[2 * maxD + 2];
+        int[] backward = new int[2 * maxD + 2];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = delta % 2 != 0;
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int i = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[i - 1] < forward[i + 1])) {
+                    x1 = forward[i + 1];
+                } else {
+                    x1 = forward[i - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && _a[aLo + x1] == _b[bLo + y1]) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                forward[i] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (odd) {
+                    int j = offset + delta - k1;
+                    if (j >= 0 && j < backward.length && backward[j] != -1
+                        && x1 >= n - backward[j]) {
+                        return new int[] {x1, y1};
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int i = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && backward[i - 1] < backward[i + 1])) {
+                    x2 = backward[i + 1];
+                } else {
+                    x2 = backward[i - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m
+                       && _a[aHi - x2 - 1] == _b[bHi - y2 - 1]) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                backward[i] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!odd) {
+                    int j = offset + delta - k2;
+                    if (j >= 0 && j < forward.length && forward[j] != -1
+                        && forward[j] >= n - x2) {
+                        int x1 = forward[j];
+                        return new int[] {x1, x1 - (delta - k2)};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** The sequences _common was computed for. */
+    private List<String> _source1, _source2;
+
+    /** The cached result of commonSubsequence, or null. */
+    private int[] _common;
+
+    /** The interned sequences, while computing. */
+    private int[] _a, _b;
+
+    /** Common runs found so far, as (start1, start2, length) triples in no
+     *  particular order, while computing. */
+    private ArrayList<int[]> _runs;
+
+}
@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MyersDiff against the reference Diff.
+ *  @author Kelvin Mo
+ */
+public class MyersDiffTest {
+
+    /** Return a list of N random lines drawn from K distinct values. */
+    private static List<String> randomLines(Random r, int n, int k) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            result.add("line " + r.nextInt(k));
+        }
+        return result;
+    }
+
+    /** Return the result of applying the edits EDITS, as given by
+     *  Diff.diffs, to SEQ1, taking inserted lines from SEQ2. */
+    private static List<String> apply(int[] edits, List<String> seq1,
+                                      List<String> seq2) {
+        ArrayList<String> result = new ArrayList<>();
+        int pos = 0;
+        for (int k = 0; k < edits.length; k += 4) {
+            result.addAll(seq1.subList(pos, edits[k]));
+            result.addAll(seq2.subList(edits[k + 2], edits[k + 2] + edits[k + 3]));
+            pos = edits[k] + edits[k + 1];
+        }
+        result.addAll(seq1.subList(pos, seq1.size()));
+        return result;
+    }
+
+    @Test
+    public void matchesReference() {
+        Random r = new Random(61);
+        for (int trial = 0; trial < 500; trial += 1) {
+            List<String> seq1 = randomLines(r, r.nextInt(40), 1 + r.nextInt(6));
+            List<String> seq2 = randomLines(r, r.nextInt(40), 1 + r.nextInt(6));
+            Diff reference = new Diff();
+            reference.setSequences(seq1, seq2);
+            MyersDiff myers = new MyersDiff();
+            myers.setSequences(seq1, seq2);
+            assertEquals("lls", reference.lls(), myers.lls());
+            assertEquals("equal", reference.sequencesEqual(),
+                         myers.sequencesEqual());
+            assertEquals("edits", seq2, apply(myers.diffs(), seq1, seq2));
+            int[] common = myers.commonSubsequence();
+            for (int k = 0; k < common.length; k += 3) {
+                assertEquals(seq1.subList(common[k], common[k] + common[k + 2]),
+                             seq2.subList(common[k + 1],
+                                          common[k + 1] + common[k + 2]));
+            }
+        }
+    }
+
+    @Test
+    public void largeInputsWithFewEdits() {
+        Random r = new Random(1);
+        ArrayList<String> seq1 = new ArrayList<>();
+        for (int i = 0; i < 100000; i += 1) {
+            seq1.add("line " + i);
+        }
+        ArrayList<String> seq2 = new ArrayList<>(seq1);
+        for (int i = 0; i < 5; i += 1) {
+            seq2.set(r.nextInt(seq2.size()), "changed " + i);
+        }
+        MyersDiff myers = new MyersDiff();
+        myers.setSequences(seq1, seq2);
+        assertEquals(seq1.size() - 5, myers.lls());
+        assertEquals(seq2, apply(myers.diffs(), seq1, seq2));
+    }
+
+}
@@ -0,0 +1,51 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+
+/** Access to the objects of a repository: commits, trees and blobs.
+ *  Commands read and write objects only through this interface, so that
+ *  an implementation may keep decoded objects in memory.
+ *  @author Kelvin Mo
+ */
+interface ObjectDatabase {
+
+    /** Return the commit HASH. */
+    Commit readCommit(String hash);
+
+    /** Store COMMIT under its hash. */
+    void writeCommit(Commit commit);
+
+    /** Return true iff commit HASH exists. */
+    boolean hasCommit(String hash);
+
+    /** Return the hashes of all commits, in lexicographic order. */
+    List<String> listCommits();
+
+    /** Return true iff tree HASH exists. */
+    boolean hasTree(String hash);
+
+    /** Return the tree HASH.  The result is shared and must not be
+     *  modified. */
+    Tree readTree(String hash);
+
+    /** Store TREE under the hash of its encoding and return that hash. */
+    String writeTree(Tree tree);
+
+    /** Return true iff blob HASH exists. */
+    boolean hasBlob(String hash);
+
+    /** Return the contents of blob HASH. */
+    byte[] readBlob(String hash);
+
+    /** Copy the contents of blob HASH to DEST. */
+    void copyBlob(String hash, File dest);
+
+    /** Store the contents of SOURCE as blob HASH. */
+    void writeBlob(String hash, File source);
+
+    /** Pass the hits and misses of each cache since the last call to
+     *  Metrics.cache, and start counting them afresh. */
+    void recordCaches();
+
+}
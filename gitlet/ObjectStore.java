@@ -0,0 +1,524 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A content-addressed store of compressed objects kept under a single
+ *  directory.  An object with hash H lives in DIR/H[0..1]/H[2..], so no
+ *  one directory has to hold every object.  Each object file starts with
+ *  a one-byte kind tag followed by the deflated contents.  All reads and
+ *  writes go through streams, so contents are kept byte-for-byte and are
+ *  never held in memory as a whole.  Objects may also be gathered into
+ *  Packs under DIR/pack by repack, after which their loose files are
+ *  removed; lookups consult the loose files first and then each pack.
+ *
+ *  Files larger than CHUNK_THRESHOLD are split by a Chunker and stored
+ *  as a manifest object, tagged CHUNKED, listing the hashes of chunks
+ *  that are themselves ordinary objects of this store.  A new version of
+ *  a large file thus adds only the chunks that changed.  Manifests stay
+ *  loose; their chunks are packed like any other object.
+ *  @author Kelvin Mo
+ */
+class ObjectStore {
+
+    /** Kind tag of an object whose deflated contents follow directly. */
+    static final int RAW = 0;
+
+    /** Kind tag of an object whose deflated contents are the hashes of its
+     *  chunks, in order. */
+    static final int CHUNKED = 1;
+
+    /** Files larger than this many bytes are stored as chunks. */
+    static final long CHUNK_THRESHOLD = 1 << 23;
+
+    /** Number of leading hash characters used to name fan-out
+     *  subdirectories. */
+    static final int FANOUT = 2;
+
+    /** Size of the buffers used to stream object contents. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The directory holding all objects of this store. */
+    private final File dir;
+
+    /** The packs of this store, or null if not yet loaded. */
+    private List<Pack> packs;
+
+    /** The journal told of each new object, or null. */
+    private Journal journal;
+
+    /** A store whose objects live under DIR. */
+    ObjectStore(File dir) {
+        this.dir = dir;
+    }
+
+    /** Tell JOURNAL of each object written from now on. */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /** Return the directory holding this store. */
+    File getDir() {
+        return this.dir;
+    }
+
+    /** Return the file that holds (or would hold) the object HASH. */
+    File fileFor(String hash) {
+        return Utils.join(this.dir, hash.substring(0, FANOUT),
+                          hash.substring(FANOUT));
+    }
+
+    /** Return the flat, uncompressed file that older repositories used
+     *  for the object HASH. */
+    private File legacyFileFor(String hash) {
+        return Utils.join(this.dir, hash);
+    }
+
+    /** Return the directory holding the packs of this store. */
+    File packDir() {
+        return Utils.join(this.dir, "pack");
+    }
+
+    /** Return the packs of this store, loading them if needed.  Objects
+     *  may be written from several threads at once, so the list is loaded
+     *  by one thread only. */
+    private synchronized List<Pack> packs() {
+        if (this.packs == null) {
+            this.packs = new ArrayList<>();
+            List<String> names = Utils.plainFilenamesIn(packDir());
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        String stem = name.substring(0, name.length() - 4);
+                        File data = Utils.join(packDir(), stem + ".pack");
+                        if (data.isFile()) {
+                            this.packs.add(new Pack(Utils.join(packDir(), name),
+                                                    data));
+                        }
+                    }
+                }
+            }
+        }
+        return this.packs;
+    }
+
+    /** Return true iff the object HASH is loose in this store, that is,
+     *  not only in a pack. */
+    boolean isLoose(String hash) {
+        return fileFor(hash).isFile() || legacyFileFor(hash).isFile();
+    }
+
+    /** Return true iff the object HASH is present in this store. */
+    boolean exists(String hash) {
+        if (isLoose(hash)) {
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the time the loose file of the object HASH was written, in
+     *  milliseconds, or 0 if there is no such file.  Packs keep no time
+     *  per object, and a pack's own is that of the last repack or fetch,
+     *  so packed objects have none. */
+    long modified(String hash) {
+        if (fileFor(hash).isFile()) {
+            return fileFor(hash).lastModified();
+        }
+        if (legacyFileFor(hash).isFile()) {
+            return legacyFileFor(hash).lastModified();
+        }
+        return 0;
+    }
+
+    /** Store the contents of SOURCE under HASH, which must be the SHA-1 of
+     *  those contents, unless an object with that hash is already present.
+     *  Large files are stored as chunks. */
+    void put(String hash, File source) {
+        if (exists(hash)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            if (source.length() > CHUNK_THRESHOLD) {
+                writeChunked(hash, in);
+            } else {
+                write(hash, in);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Store CONTENTS under HASH unless an object with that hash is already
+     *  present. */
+    void put(String hash, byte[] contents) {
+        if (exists(hash)) {
+            return;
+        }
+        try {
+            write(hash, new ByteArrayInputStream(contents));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Compress everything in IN into a new object file for HASH. */
+    private void write(String hash, InputStream in) throws IOException {
+        write(hash, RAW, in);
+    }
+
+    /** Split everything in IN into chunks, store those not yet present,
+     *  and write the manifest listing them under HASH. */
+    private void writeChunked(String hash, InputStream in) throws IOException {
+        Chunker chunker = new Chunker(in);
+        ArrayList<String> chunks = new ArrayList<>();
+        byte[] chunk;
+        while ((chunk = chunker.next()) != null) {
+            String chunkHash = Utils.sha1(chunk);
+            put(chunkHash, chunk);
+            chunks.add(chunkHash);
+        }
+        writeManifest(hash, chunks);
+    }
+
+    /** Write the manifest listing CHUNKS under HASH. */
+    private void writeManifest(String hash, List<String> chunks)
+        throws IOException {
+        byte[] manifest = new byte[chunks.size() * Pack.HASH_BYTES];
+        for (int i = 0; i < chunks.size(); i += 1) {
+            System.arraycopy(Pack.toBytes(chunks.get(i)), 0, manifest,
+                             i * Pack.HASH_BYTES, Pack.HASH_BYTES);
+        }
+        write(hash, CHUNKED, new ByteArrayInputStream(manifest));
+    }
+
+    /** Compress everything in IN into a new object file for HASH with the
+     *  kind tag KIND.  The object is written to a temporary file first and
+     *  then renamed into place, so readers never see a partial object.  It
+     *  is not flushed to disk until the journal, if any, is committed. */
+    private void write(String hash, int kind, InputStream in)
+        throws IOException {
+        File target = fileFor(hash);
+        File parent = target.getParentFile();
+        parent.mkdirs();
+        File temp = File.createTempFile("obj", ".tmp", parent);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream raw = Files.newOutputStream(temp.toPath())) {
+            raw.write(kind);
+            DeflaterOutputStream out =
+                new DeflaterOutputStream(raw, deflater, BUFFER_SIZE);
+            in.transferTo(out);
+            out.finish();
+        } catch (IOException excp) {
+            temp.delete();
+            throw excp;
+        } finally {
+            deflater.end();
+        }
+        if (this.journal != null) {
+            this.journal.added(target);
+        }
+        Files.move(temp.toPath(), target.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Copy the objects HASHES from SOURCE into this store as one new
+     *  pack, except for those too large to pack, which are copied loose.
+     *  Of a chunked object, only the chunks missing here are copied, and
+     *  its manifest is copied loose. */
+    void copyFrom(ObjectStore source, Collection<String> hashes) {
+        ArrayList<String> wanted = new ArrayList<>();
+        HashMap<String, List<String>> manifests = new HashMap<>();
+        for (String hash : hashes) {
+            List<String> chunks = source.chunks(hash);
+            if (chunks == null) {
+                wanted.add(hash);
+                continue;
+            }
+            manifests.put(hash, chunks);
+            for (String chunk : chunks) {
+                if (!exists(chunk)) {
+                    wanted.add(chunk);
+                }
+            }
+        }
+        try {
+            if (!wanted.isEmpty()) {
+                ArrayList<String> packed = new ArrayList<>();
+                String name = Pack.write(source, wanted,
+                                         new HashMap<String, String>(),
+                                         packDir(), packed);
+                if (this.journal != null) {
+                    this.journal.added(Utils.join(packDir(), name + ".idx"));
+                    this.journal.added(Utils.join(packDir(), name + ".pack"));
+                }
+                this.packs = null;
+                HashSet<String> rest = new HashSet<>(wanted);
+                rest.removeAll(packed);
+                for (String hash : rest) {
+                    try (InputStream in = source.open(hash)) {
+                        write(hash, in);
+                    }
+                }
+            }
+            for (Map.Entry<String, List<String>> e : manifests.entrySet()) {
+                writeManifest(e.getKey(), e.getValue());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the hashes of the chunks of the object HASH, in order, or
+     *  null if it is not stored as chunks. */
+    List<String> chunks(String hash) {
+        File file = fileFor(hash);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            if (in.read() != CHUNKED) {
+                return null;
+            }
+            byte[] manifest =
+                new InflaterInputStream(in, new Inflater(), BUFFER_SIZE)
+                .readAllBytes();
+            ArrayList<String> result = new ArrayList<>();
+            for (int i = 0; i < manifest.length; i += Pack.HASH_BYTES) {
+                result.add(Pack.toHex(Arrays.copyOfRange(manifest, i,
+                                                         i + Pack.HASH_BYTES)));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream over the uncompressed contents of the object HASH.
+     *  Throws IllegalArgumentException if there is no such object. */
+    InputStream open(String hash) {
+        try {
+            File file = fileFor(hash);
+            if (!file.isFile()) {
+                File legacy = legacyFileFor(hash);
+                if (legacy.isFile()) {
+                    return Files.newInputStream(legacy.toPath());
+                }
+                for (Pack pack : packs()) {
+                    byte[] contents = pack.read(hash);
+                    if (contents != null) {
+                        return new ByteArrayInputStream(contents);
+                    }
+                }
+                throw new IllegalArgumentException("no object " + hash);
+            }
+            InputStream in = Files.newInputStream(file.toPath());
+            int kind = in.read();
+            if (kind == CHUNKED) {
+                in.close();
+                Iterator<String> chunks = chunks(hash).iterator();
+                return new SequenceInputStream(new Enumeration<InputStream>() {
+                    @Override
+                    public boolean hasMoreElements() {
+                        return chunks.hasNext();
+                    }
+
+                    @Override
+                    public InputStream nextElement() {
+                        return open(chunks.next());
+                    }
+                });
+            }
+            if (kind != RAW) {
+                in.close();
+                throw new IllegalArgumentException("bad object " + hash);
+            }
+            return new InflaterInputStream(in, new Inflater(),
+                                           BUFFER_SIZE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the uncompressed contents of the object HASH. */
+    byte[] read(String hash) {
+        long start = Metrics.start();
+        try (InputStream in = open(hash)) {
+            byte[] result = in.readAllBytes();
+            Metrics.record(Metrics.Op.STORE_READ, start, result.length);
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the uncompressed contents of the object HASH, or null if
+     *  they are longer than LIMIT bytes. */
+    byte[] read(String hash, int limit) {
+        try (InputStream in = open(hash)) {
+            byte[] result = in.readNBytes(limit);
+            return in.read() == -1 ? result : null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the contents of the object HASH to DEST, creating or
+     *  overwriting it as needed. */
+    void copyTo(String hash, File dest) {
+        try (InputStream in = open(hash)) {
+            Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the hashes of all objects in this store, in lexicographic
+     *  order. */
+    List<String> list() {
+        TreeSet<String> result = new TreeSet<>(listLoose());
+        for (Pack pack : packs()) {
+            result.addAll(pack.hashes());
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Return the hashes of all loose objects in this store, in
+     *  lexicographic order. */
+    List<String> listLoose() {
+        ArrayList<String> result = new ArrayList<>();
+        String[] entries = this.dir.list();
+        if (entries == null) {
+            return result;
+        }
+        for (String entry : entries) {
+            File sub = Utils.join(this.dir, entry);
+            if (entry.length() == FANOUT && sub.isDirectory()) {
+                for (String rest : Utils.plainFilenamesIn(sub)) {
+                    if (rest.length() == Utils.UID_LENGTH - FANOUT) {
+                        result.add(entry + rest);
+                    }
+                }
+            } else if (entry.length() == Utils.UID_LENGTH && sub.isFile()) {
+                result.add(entry);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Gather every object of this store into a single new pack, then
+     *  delete the loose objects and older packs it replaces.  BASES maps
+     *  some objects to a similar object to delta them against.  Objects
+     *  too large to pack stay loose. */
+    void repack(Map<String, String> bases) {
+        List<String> loose = listLoose();
+        loose.removeIf(hash -> chunks(hash) != null);
+        if (loose.isEmpty() && packs().size() <= 1) {
+            return;
+        }
+        writePack(list(), bases);
+    }
+
+    /** Remove the objects HASHES from this store.  If any of them are
+     *  packed, all objects are repacked without them, using BASES as for
+     *  repack. */
+    void delete(Set<String> hashes, Map<String, String> bases) {
+        boolean packed = false;
+        for (String hash : hashes) {
+            deleteLoose(hash);
+            for (Pack pack : packs()) {
+                packed |= pack.contains(hash);
+            }
+        }
+        if (packed) {
+            List<String> keep = list();
+            keep.removeAll(hashes);
+            writePack(keep, bases);
+        }
+    }
+
+    /** Delete the loose file of the object HASH, if any. */
+    private void deleteLoose(String hash) {
+        if (fileFor(hash).delete()) {
+            fileFor(hash).getParentFile().delete();
+        }
+        legacyFileFor(hash).delete();
+    }
+
+    /** Write HASHES into a single new pack, using BASES as for repack, and
+     *  delete the loose objects and older packs it replaces.  Nothing is
+     *  deleted until the new pack is durable, so a crash leaves every
+     *  object readable from the old files or the new pack.  Manifests of
+     *  chunked objects are left loose. */
+    private void writePack(List<String> hashes, Map<String, String> bases) {
+        hashes.removeIf(hash -> chunks(hash) != null);
+        HashMap<String, Integer> depths = new HashMap<>();
+        for (String hash : hashes) {
+            baseDepth(hash, bases, depths);
+        }
+        hashes.sort(Comparator.comparing((String hash) -> depths.get(hash))
+                    .thenComparing(Comparator.naturalOrder()));
+        ArrayList<String> packed = new ArrayList<>();
+        String name = Pack.write(this, hashes, bases, packDir(), packed);
+
+        for (String old : Utils.plainFilenamesIn(packDir())) {
+            if ((old.endsWith(".pack") || old.endsWith(".idx"))
+                && !old.startsWith(name + ".")) {
+                Utils.join(packDir(), old).delete();
+            }
+        }
+        this.packs = null;
+        for (String hash : packed) {
+            deleteLoose(hash);
+        }
+    }
+
+    /** Return the length of the chain of suggested BASES leading from HASH,
+     *  memoizing results in DEPTHS.  Cycles are cut where they close. */
+    private static int baseDepth(String hash, Map<String, String> bases,
+                                 Map<String, Integer> depths) {
+        ArrayList<String> chain = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        String next = hash;
+        while (next != null && !depths.containsKey(next) && seen.add(next)) {
+            chain.add(next);
+            next = bases.get(next);
+        }
+        int depth = next != null && depths.containsKey(next)
+            ? depths.get(next) + 1 : 0;
+        for (int i = chain.size() - 1; i >= 0; i -= 1) {
+            depths.put(chain.get(i), depth);
+            depth += 1;
+        }
+        return depths.get(hash);
+    }
+
+}
@@ -0,0 +1,372 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A read-only pack of objects: one data file holding many compressed
+ *  objects, some stored as deltas against another object in the same
+ *  pack, plus an index of their hashes sorted for binary search.  Both
+ *  files are memory-mapped, the data file in overlapping windows so that
+ *  a pack may grow past the 2 GiB one mapping can hold.
+ *
+ *  The index holds a magic number, a version and an entry count, then one
+ *  entry per object: its 20-byte hash and the 8-byte offset of the object
+ *  in the data file.  Each object in the data file is a kind byte
+ *  (FULL or DELTA), the 20-byte hash of its base if it is a delta, its
+ *  uncompressed length, the length of its deflated data, and that data.
+ *  @author Kelvin Mo
+ */
+class Pack {
+
+    /** Kind of a packed object whose data is its whole contents. */
+    static final int FULL = 0;
+
+    /** Kind of a packed object whose data is a Delta against a base. */
+    static final int DELTA = 1;
+
+    /** Magic number starting every index file. */
+    static final int INDEX_MAGIC = 0x474c4958;
+
+    /** Magic number starting every data file. */
+    static final int PACK_MAGIC = 0x474c504b;
+
+    /** Version of the pack format written by this class. */
+    static final int VERSION = 1;
+
+    /** Number of bytes in a binary object hash. */
+    static final int HASH_BYTES = Utils.UID_LENGTH / 2;
+
+    /** Number of bytes in one index entry. */
+    private static final int ENTRY_SIZE = HASH_BYTES + 8;
+
+    /** Number of bytes in the header of an index file. */
+    private static final int HEADER_SIZE = 12;
+
+    /** Number of bytes in the header of a data file. */
+    private static final int PACK_HEADER_SIZE = 8;
+
+    /** Objects larger than this are left loose rather than packed. */
+    static final int MAX_OBJECT_SIZE = 1 << 26;
+
+    /** Longest chain of deltas allowed before an object is stored whole. */
+    static final int MAX_DEPTH = 16;
+
+    /** A delta is kept only if it is smaller than this fraction of the
+     *  object it encodes. */
+    private static final double MAX_DELTA_RATIO = 0.5;
+
+    /** Distance between the starts of successive windows of a data file. */
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    /** Bytes mapped past the end of each window, enough that every object
+     *  starting in a window lies wholly within its mapping. */
+    private static final long WINDOW_OVERLAP = 2L * MAX_OBJECT_SIZE;
+
+    /** The memory-mapped index. */
+    private final ByteBuffer index;
+
+    /** The memory-mapped windows of the data file, window K starting at
+     *  K * WINDOW_SIZE. */
+    private final ByteBuffer[] data;
+
+    /** Number of objects in this pack. */
+    private final int count;
+
+    /** The pack whose index is INDEXFILE and whose data is DATAFILE. */
+    Pack(File indexFile, File dataFile) {
+        this.index = map(indexFile);
+        this.data = mapWindows(dataFile);
+        if (this.index.getInt(0) != INDEX_MAGIC
+            || this.index.getInt(4) != VERSION
+            || this.data[0].getInt(0) != PACK_MAGIC
+            || this.data[0].getInt(4) != VERSION) {
+            throw Utils.error("Corrupt pack %s.", dataFile.getName());
+        }
+        this.count = this.index.getInt(8);
+    }
+
+    /** Return a read-only mapping of all of FILE. */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return read-only mappings of FILE in windows WINDOW_SIZE apart,
+     *  each reaching WINDOW_OVERLAP bytes into the next. */
+    private static ByteBuffer[] mapWindows(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] result =
+                new ByteBuffer[(int) Math.max(1, (size + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+            for (int k = 0; k < result.length; k += 1) {
+                long start = k * WINDOW_SIZE;
+                result[k] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                        Math.min(WINDOW_SIZE + WINDOW_OVERLAP,
+                                                 size - start));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the number of objects in this pack. */
+    int size() {
+        return this.count;
+    }
+
+    /** Return true iff this pack holds the object HASH. */
+    boolean contains(String hash) {
+        return find(toBytes(hash)) >= 0;
+    }
+
+    /** Return the hashes of all objects in this pack, in order. */
+    List<String> hashes() {
+        ArrayList<String> result = new ArrayList<>(this.count);
+        byte[] key = new byte[HASH_BYTES];
+        for (int i = 0; i < this.count; i += 1) {
+            this.index.get(HEADER_SIZE + i * ENTRY_SIZE, key);
+            result.add(toHex(key));
+        }
+        return result;
+    }
+
+    /** Return the contents of the object HASH, or null if it is not in
+     *  this pack. */
+    byte[] read(String hash) {
+        int i = find(toBytes(hash));
+        if (i < 0) {
+            return null;
+        }
+        return readAt(this.index.getLong(HEADER_SIZE + i * ENTRY_SIZE + HASH_BYTES),
+                      0);
+    }
+
+    /** Return the contents of the object starting at OFFSET in the data
+     *  file, which is DEPTH deltas away from the object first asked for. */
+    private byte[] readAt(long offset, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw Utils.error("Delta chain too long.");
+        }
+        ByteBuffer window = this.data[(int) (offset / WINDOW_SIZE)];
+        int pos = (int) (offset % WINDOW_SIZE);
+        int kind = window.get(pos);
+        pos += 1;
+        byte[] base = null;
+        if (kind == DELTA) {
+            byte[] baseHash = new byte[HASH_BYTES];
+            window.get(pos, baseHash);
+            pos += HASH_BYTES;
+            int i = find(baseHash);
+            if (i < 0) {
+                throw Utils.error("Missing delta base %s.", toHex(baseHash));
+            }
+            base = readAt(this.index.getLong(HEADER_SIZE + i * ENTRY_SIZE
+                                             + HASH_BYTES), depth + 1);
+        }
+        int rawLength = window.getInt(pos);
+        int dataLength = window.getInt(pos + 4);
+        pos += 8;
+        byte[] compressed = new byte[dataLength];
+        window.get(pos, compressed);
+        byte[] raw = inflate(compressed, rawLength);
+        return kind == DELTA ? Delta.apply(base, raw) : raw;
+    }
+
+    /** Return the index of the entry for the binary hash KEY, or -1. */
+    private int find(byte[] key) {
+        byte[] probe = new byte[HASH_BYTES];
+        int lo = 0, hi = this.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            this.index.get(HEADER_SIZE + mid * ENTRY_SIZE, probe);
+            int c = Arrays.compareUnsigned(probe, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Write the objects HASHES, read from SOURCE, as a new pack in DIR and
+     *  return the name shared by its index and data files.  BASES suggests
+     *  for some objects another object that is likely to be similar; such
+     *  objects are stored as deltas when that pays off.  Objects larger
+     *  than MAX_OBJECT_SIZE are skipped, and the hashes actually packed
+     *  are left in PACKED.  Both files are on disk under their final
+     *  names when this returns, so the objects they replace may then be
+     *  deleted. */
+    static String write(ObjectStore source, List<String> hashes,
+                        Map<String, String> bases, File dir,
+                        List<String> packed) {
+        dir.mkdirs();
+        HashMap<String, Long> offsets = new HashMap<>();
+        HashMap<String, Integer> depths = new HashMap<>();
+        File dataTemp, indexTemp;
+        try {
+            dataTemp = File.createTempFile("pack", ".tmp", dir);
+            indexTemp = File.createTempFile("idx", ".tmp", dir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(dataTemp.toPath())))) {
+            out.writeInt(PACK_MAGIC);
+            out.writeInt(VERSION);
+            long offset = PACK_HEADER_SIZE;
+            for (String hash : hashes) {
+                if (offsets.containsKey(hash)) {
+                    continue;
+                }
+                byte[] contents = source.read(hash, MAX_OBJECT_SIZE);
+                if (contents == null) {
+                    continue;
+                }
+                int kind = FULL;
+                byte[] body = contents;
+                String base = bases.get(hash);
+                if (base != null && offsets.containsKey(base)
+                    && depths.get(base) < MAX_DEPTH) {
+                    byte[] delta = Delta.compute(source.read(base), contents);
+                    if (delta != null
+                        && delta.length < contents.length * MAX_DELTA_RATIO) {
+                        kind = DELTA;
+                        body = delta;
+                    }
+                }
+                byte[] compressed = deflate(body);
+                offsets.put(hash, offset);
+                depths.put(hash, kind == DELTA ? depths.get(base) + 1 : 0);
+                out.writeByte(kind);
+                offset += 1;
+                if (kind == DELTA) {
+                    out.write(toBytes(base));
+                    offset += HASH_BYTES;
+                }
+                out.writeInt(body.length);
+                out.writeInt(compressed.length);
+                out.write(compressed);
+                offset += 8 + compressed.length;
+                packed.add(hash);
+            }
+        } catch (IOException excp) {
+            dataTemp.delete();
+            indexTemp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+
+        ArrayList<String> sorted = new ArrayList<>(packed);
+        sorted.sort(null);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(indexTemp.toPath())))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            for (String hash : sorted) {
+                out.write(toBytes(hash));
+                out.writeLong(offsets.get(hash));
+            }
+        } catch (IOException excp) {
+            dataTemp.delete();
+            indexTemp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+
+        String name = "pack-" + Utils.sha1(indexTemp);
+        try {
+            Journal.force(dataTemp);
+            Journal.force(indexTemp);
+            Files.move(dataTemp.toPath(), Utils.join(dir, name + ".pack").toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp.toPath(), Utils.join(dir, name + ".idx").toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            Journal.forceDir(dir);
+        } catch (IOException excp) {
+            dataTemp.delete();
+            indexTemp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return name;
+    }
+
+    /** Return DATA compressed with Deflate. */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Return the LENGTH bytes obtained by inflating DATA. */
+    private static byte[] inflate(byte[] data, int length) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        byte[] result = new byte[length];
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                n += inflater.inflate(result, n, length - n);
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    /** Return the 20 bytes denoted by the hexadecimal HASH. */
+    static byte[] toBytes(String hash) {
+        byte[] result = new byte[HASH_BYTES];
+        for (int i = 0; i < HASH_BYTES; i += 1) {
+            result[i] = (byte) Integer.parseInt(hash.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+
+    /** Return the hexadecimal numeral for the binary hash BYTES. */
+    static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,143 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/** The object stores, refs and commit indexes of a repository, either the
+ *  current one or another on the local file system, seen as one end of a
+ *  transfer of history.
+ *
+ *  A transfer walks back from the commit wanted through the sending
+ *  side's history and stops at every commit the receiving side already
+ *  has.  Trees the receiver has are skipped whole, since having a tree
+ *  implies having everything under it.  What remains is sent as one pack
+ *  per kind of object, not as one file per object.
+ *  @author Kelvin Mo
+ */
+class Remote {
+
+    /** The .gitlet directory of the repository. */
+    private final File gitlet;
+
+    /** Store of blobs. */
+    private final ObjectStore blobs;
+
+    /** Store of commits. */
+    private final ObjectStore commits;
+
+    /** Store of trees. */
+    private final ObjectStore trees;
+
+    /** Access to the objects in the three stores. */
+    private final ObjectDatabase db;
+
+    /** Journal through which refs are written. */
+    private final Journal journal;
+
+    /** The repository whose .gitlet directory is GITLET, with the given
+     *  stores, database DB and JOURNAL. */
+    Remote(File gitlet, ObjectStore blobs, ObjectStore commits,
+           ObjectStore trees, ObjectDatabase db, Journal journal) {
+        this.gitlet = gitlet;
+        this.blobs = blobs;
+        this.commits = commits;
+        this.trees = trees;
+        this.db = db;
+        this.journal = journal;
+    }
+
+    /** Return the repository whose .gitlet directory is GITLET, with a
+     *  journal of its own. */
+    static Remote open(File gitlet) {
+        ObjectStore blobs = new ObjectStore(Utils.join(gitlet, "blobs"));
+        ObjectStore commits = new ObjectStore(Utils.join(gitlet, "Commits"));
+        ObjectStore trees = new ObjectStore(Utils.join(gitlet, "trees"));
+        Journal journal = new Journal(Utils.join(gitlet, "journal"));
+        blobs.setJournal(journal);
+        commits.setJournal(journal);
+        trees.setJournal(journal);
+        return new Remote(gitlet, blobs, commits, trees,
+                          new CachedObjectDatabase(blobs, commits, trees),
+                          journal);
+    }
+
+    /** Return the journal of this repository. */
+    Journal journal() {
+        return this.journal;
+    }
+
+    /** Return the file holding the ref of BRANCH. */
+    File ref(String branch) {
+        return Utils.join(this.gitlet, "Branches", branch);
+    }
+
+    /** Return the commit that BRANCH points to, or null if there is no
+     *  such branch. */
+    String branch(String branch) {
+        File ref = ref(branch);
+        return ref.isFile() ? Utils.readContentsAsString(ref) : null;
+    }
+
+    /** Return true iff this repository has commit HASH. */
+    boolean hasCommit(String hash) {
+        return this.db.hasCommit(hash);
+    }
+
+    /** Copy commit HEAD and every ancestor of it, tree and blob that TO
+     *  lacks from FROM into TO, and arrange for the new commits to be
+     *  recorded in TO's commit indexes when TO's journal is committed.  Return the commits copied, oldest first. */
+    static List<Commit> copy(Remote from, Remote to, String head) {
+        ArrayList<Commit> sent = new ArrayList<>();
+        TreeSet<String> trees = new TreeSet<>();
+        TreeSet<String> blobs = new TreeSet<>();
+        HashSet<String> seen = new HashSet<>();
+        ArrayDeque<String> todo = new ArrayDeque<>();
+        todo.push(head);
+        while (!todo.isEmpty()) {
+            String hash = todo.pop();
+            if (!seen.add(hash) || to.db.hasCommit(hash)) {
+                continue;
+            }
+            Commit c = from.db.readCommit(hash);
+            sent.add(c);
+            Tree.missing(from.db, c.getTree(), to.db, trees, blobs);
+            for (String parent : c.getAllParents()) {
+                todo.push(parent);
+            }
+        }
+        to.blobs.copyFrom(from.blobs, blobs);
+        to.trees.copyFrom(from.trees, trees);
+        ArrayList<String> hashes = new ArrayList<>();
+        for (Commit c : sent) {
+            hashes.add(c.getHash());
+        }
+        to.commits.copyFrom(from.commits, hashes);
+        sent.sort((a, b) -> Long.compare(a.getTime(), b.getTime()));
+        to.record(sent);
+        return sent;
+    }
+
+    /** Add ADDED, oldest first, to the index of commit ids and the
+     *  commit log once the journal is committed. */
+    private void record(List<Commit> added) {
+        File idsFile = Utils.join(this.gitlet, "commit-ids");
+        File logDir = Utils.join(this.gitlet, "log");
+        this.journal.append(idsFile, () -> {
+            CommitIndex ids = new CommitIndex(idsFile);
+            for (Commit c : added) {
+                ids.add(c.getHash());
+            }
+        });
+        this.journal.append(logDir, () -> {
+            CommitLog log = new CommitLog(logDir);
+            for (Commit c : added) {
+                log.append(c);
+            }
+        });
+    }
+
+}
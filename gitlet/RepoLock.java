@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/** An advisory lock on the file .gitlet/lock, held by a process for the
+ *  whole of one command.  Commands that only read the repository take it
+ *  shared, so they never wait for one another; every other command takes
+ *  it exclusive, so it waits for all readers and runs alone.
+ *
+ *  An interrupted command leaves a journal, which must be recovered
+ *  before anything is read.  Writers recover it under their exclusive
+ *  lock.  A reader that finds a journal takes the lock exclusive just long
+ *  enough to recover it, which only ever waits for the writer that owns
+ *  the journal or for a crash's leftovers.
+ *  @author Kelvin Mo
+ */
+class RepoLock implements AutoCloseable {
+
+    /** The commands that only read the repository. */
+    static final Set<String> READERS =
+        Set.of("log", "global-log", "find", "status");
+
+    /** Milliseconds between attempts of tryAcquire. */
+    private static final long RETRY_MILLIS = 20;
+
+    /** The channel holding the lock, or null if nothing was locked. */
+    private final FileChannel channel;
+
+    /** A lock held through CHANNEL, which may be null. */
+    private RepoLock(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /** Return the lock, shared or exclusive, that the command ARGS needs,
+     *  once any interrupted command has been recovered.  There is nothing
+     *  to lock before the repository exists. */
+    static RepoLock forCommand(String[] args) {
+        boolean shared = READERS.contains(args[0]);
+        if (shared && Repository.JournalFile.exists()) {
+            RepoLock recovery = acquire(Repository.LockFile, false);
+            try {
+                Journal.recover(Repository.JournalFile);
+            } finally {
+                recovery.close();
+            }
+        }
+        RepoLock result = acquire(Repository.LockFile, shared);
+        if (!shared) {
+            Journal.recover(Repository.JournalFile);
+        }
+        return result;
+    }
+
+    /** Return a lock on FILE, SHARED or exclusive, waiting until it can be
+     *  had.  FILE is created if needed, unless its directory does not
+     *  exist, in which case nothing is locked. */
+    static RepoLock acquire(File file, boolean shared) {
+        if (!file.getParentFile().isDirectory()) {
+            return new RepoLock(null);
+        }
+        try {
+            FileChannel channel =
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+            try {
+                channel.lock(0, Long.MAX_VALUE, shared);
+            } catch (IOException excp) {
+                channel.close();
+                throw excp;
+            }
+            return new RepoLock(channel);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a lock on FILE, SHARED or exclusive, or null if it could not
+     *  be had within MILLIS milliseconds.  Used for other repositories,
+     *  where waiting without a limit could deadlock with a command running
+     *  there that waits for this one. */
+    static RepoLock tryAcquire(File file, boolean shared, long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        try {
+            FileChannel channel =
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+            try {
+                while (channel.tryLock(0, Long.MAX_VALUE, shared) == null) {
+                    if (System.currentTimeMillis() >= deadline) {
+                        channel.close();
+                        return null;
+                    }
+                    Thread.sleep(RETRY_MILLIS);
+                }
+            } catch (IOException | InterruptedException excp) {
+                channel.close();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return new RepoLock(channel);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Release this lock. */
+    @Override
+    public void close() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+}
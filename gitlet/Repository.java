@@ -1,11 +1,21 @@
 package gitlet;
 
 import java.io.File;
-import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Repository implements Serializable {
+public class Repository {
 
     /** File object of the current user directory. */
     public static final File CWD = new File(System.getProperty("user.dir"));
@@ -19,12 +29,77 @@ public class Repository implements Serializable {
     /** File object of the current Commits directory. */
     public static final File Commits = Utils.join(CWD, ".gitlet/Commits/");
 
+    /** File object of the current trees directory. */
+    public static final File Trees = Utils.join(CWD, ".gitlet/trees/");
+
     /** File object of the current staging directory. */
     public static final File Staging = Utils.join(CWD, ".gitlet/staging/");
 
+    /** File object of the commit-graph file. */
+    public static final File Graph = Utils.join(CWD, ".gitlet/commit-graph");
+
+    /** File object of the stat-cache index of the working files. */
+    public static final File IndexFile = Utils.join(CWD, ".gitlet/staging/index");
+
+    /** File object of the index of commit ids. */
+    public static final File CommitIds = Utils.join(CWD, ".gitlet/commit-ids");
+
+    /** File object of the directory of the commit log. */
+    public static final File CommitLogDir = Utils.join(CWD, ".gitlet/log/");
+
+    /** File object of the count of garbage collections started. */
+    public static final File GcGeneration = Utils.join(CWD, ".gitlet/gc-generation");
+
+    /** File object of the write-ahead journal. */
+    public static final File JournalFile = Utils.join(CWD, ".gitlet/journal");
+
+    /** File object of the lock held by every command. */
+    public static final File LockFile = Utils.join(CWD, ".gitlet/lock");
+
+    /** File object of the directory naming the remotes. */
+    public static final File Remotes = Utils.join(CWD, ".gitlet/remotes/");
+
+    /** Milliseconds to wait for the lock of a remote repository. */
+    private static final long REMOTE_LOCK_MILLIS = 10000;
+
+    /** Number of log entries printed between checks that the output can
+     *  still be written, say after a pager or head has exited. */
+    private static final int OUTPUT_CHECK_INTERVAL = 64;
+
     /** File object of the current gitlet directory. */
     public static final File Gitlet = Utils.join(CWD, ".gitlet/");
 
+    /** Compressed, content-addressed store of every blob. */
+    private ObjectStore blobs;
+
+    /** Compressed, content-addressed store of every commit. */
+    private ObjectStore commits;
+
+    /** Compressed, content-addressed store of every tree. */
+    private ObjectStore trees;
+
+    /** Cached access to the objects in the three stores. */
+    private ObjectDatabase db;
+
+    /** Journal grouping the writes of refs and staging of each command. */
+    private Journal journal;
+
+    /** The commit graph, or null if it has not been loaded yet. */
+    private CommitGraph graph;
+
+    /** The stat-cache index, or null if it has not been loaded yet. */
+    private Index index;
+
+    /** Snapshot of the working directory, or null if it has not been
+     *  scanned yet. */
+    private WorkTree workTree;
+
+    /** The index of commit ids, or null if it has not been loaded yet. */
+    private CommitIndex commitIndex;
+
+    /** The commit log, or null if it has not been loaded yet. */
+    private CommitLog commitLog;
+
     /** Stage object to store the staging area. */
     private Staging stage;
 
@@ -38,18 +113,47 @@ public class Repository implements Serializable {
     private TreeMap<String, Commit> branches;
 
     public Repository() {
+        this.blobs = new ObjectStore(Blobs);
+        this.commits = new ObjectStore(Commits);
+        this.trees = new ObjectStore(Trees);
+        this.journal = new Journal(JournalFile);
+        this.blobs.setJournal(this.journal);
+        this.commits.setJournal(this.journal);
+        this.trees.setJournal(this.journal);
+        this.db = new CachedObjectDatabase(this.blobs, this.commits, this.trees);
+        refresh();
+        this.branches = new TreeMap<String, Commit>();
+    }
+
+    public void refresh() {
+        this.workTree = null;
+        this.graph = null;
+        this.index = null;
+        this.commitIndex = null;
+        this.commitLog = null;
         File currCommit = Utils.join(Branches, "head");
         if (currCommit.exists()) {
             this.head = Utils.readContentsAsString(currCommit);
             String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-            this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+            this.commit = readCommit(commitHash);
             File stage_dir = Utils.join(Staging, "stage");
-            this.stage = Utils.readObject(stage_dir, Staging.class);
+            this.stage = new Staging(Utils.readContents(stage_dir));
         } else {
             this.head = "master";
             this.commit = null;
         }
-        this.branches = new TreeMap<String, Commit>();
+    }
+
+    public void finish() {
+        this.journal.commit();
+    }
+
+    public void abandon() {
+        this.journal.abandon();
+    }
+
+    public void recordCaches() {
+        this.db.recordCaches();
     }
 
     public void init() {
@@ -61,54 +165,64 @@ public class Repository implements Serializable {
         Gitlet.mkdir();
         Blobs.mkdir();
         Commits.mkdir();
+        Trees.mkdir();
         Staging.mkdir();
         Branches.mkdir();
 
         String msg = "initial commit";
-        this.commit = new Commit(msg, null, new TreeMap<String, String>());
+        this.commit = new Commit(msg, null, new Tree().write(this.db));
         branches.put("master", this.commit);
-        Utils.writeObject(Utils.join(Commits, this.commit.getHash()), this.commit);
-        Utils.writeObject(Utils.join(Staging, "stage"), new Staging());
-        Utils.writeContents(Utils.join(Branches, "master"), this.commit.getHash());
-        Utils.writeContents(Utils.join(Branches, "head"), "master");
+        writeCommit(this.commit);
+        graph().ensure(this.commit.getHash(), this::readCommit);
+        this.journal.write(Utils.join(Staging, "stage"), new Staging().encode());
+        this.journal.write(Utils.join(Branches, "master"), this.commit.getHash());
+        this.journal.write(Utils.join(Branches, "head"), "master");
     }
 
-    public void add(String file) {
-        File newFile = new File(file);
-        if (!newFile.exists()) {
-            System.out.println("File does not exist.");
+    public void add(String... files) {
+        if (files.length == 0) {
+            System.out.println("Incorrect operands.");
             return;
         }
-        String contents = Utils.readContentsAsString(Utils.join(CWD, file));
-        String hash = Utils.sha1(contents);
-        String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
-        if (this.commit.getMapping().containsKey(file)) {
-            if (!hash.equals(this.commit.getMapping().get(file))) {
-                Utils.writeContents(Utils.join(Blobs, hash), Utils.readContentsAsString(newFile));
-                this.stage.add(file, hash);
+        TreeSet<String> paths = new TreeSet<>();
+        for (String file: files) {
+            if (!findPaths(file, paths)) {
+                System.out.println("File does not exist.");
+                return;
             }
         }
-        if (this.commit == null) {
-            Utils.writeContents(Utils.join(Staging, file), Utils.readContents(newFile));
-            return;
-        }
-        if (this.commit.getMapping().containsKey(file)) {
-            if (this.commit.getMapping().get(file).equals(hash)) {
-                if (this.stage.getRemoval().containsKey(file)) {
-                    this.stage.remove(file);
-                    Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
-                }
-                return;
+        String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
+        this.commit = readCommit(commitHash);
+        Index index = index();
+        ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<>();
+        paths.parallelStream().forEach(path -> {
+            String hash = index.hash(path, Utils.join(CWD, path));
+            if (hash != null) {
+                hashes.put(path, hash);
+            }
+        });
+        index.save();
+        HashMap<String, String> toWrite = new HashMap<>();
+        for (String path: paths) {
+            String hash = hashes.get(path);
+            if (hash == null) {
+                continue;
+            }
+            this.stage.remove(path);
+            if (hash.equals(Tree.lookup(this.db, this.commit.getTree(), path))) {
+                this.stage.getAddition().remove(path);
+            } else {
+                this.stage.add(path, hash);
+                toWrite.putIfAbsent(hash, path);
             }
         }
-        this.stage.add(file, Utils.sha1(Utils.readContents(newFile)));
-        Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
-        Utils.writeContents(Utils.join(Blobs, hash), Utils.readContentsAsString(newFile));
+        this.journal.write(Utils.join(Staging, "stage"), this.stage.encode());
+        toWrite.entrySet().parallelStream()
+            .forEach(e -> this.db.writeBlob(e.getKey(), Utils.join(CWD, e.getValue())));
     }
 
     public void commit(String note) {
-        this.stage = Utils.readObject(Utils.join(Staging, "stage"), Staging.class);
+        this.stage = new Staging(Utils.readContents(Utils.join(Staging, "stage")));
         TreeMap<String, String> filesToAdd = this.stage.getAddition();
         TreeMap<String, String> filesToRemove = this.stage.getRemoval();
         if (filesToAdd.size() == 0 && filesToRemove.size() == 0) {
@@ -120,114 +234,151 @@ public class Repository implements Serializable {
             return;
         }
         String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
-        TreeMap<String, String> newBlobs = (TreeMap<String, String>) this.commit.getMapping().clone();
-        for (String add: filesToAdd.keySet()) {
-            String contents = Utils.readContentsAsString(new File(add));
-            String addHash = Utils.sha1(contents);
-            newBlobs.put(add, addHash);
-        }
+        this.commit = readCommit(commitHash);
+        TreeMap<String, String> changes = new TreeMap<>(filesToAdd);
         for (String remove: filesToRemove.keySet()) {
-            newBlobs.remove(remove);
+            changes.put(remove, null);
         }
-        Commit newCommit = new Commit(note, this.commit.getHash(), newBlobs);
+        String tree = Tree.update(this.db, this.commit.getTree(), changes);
+        Commit newCommit = new Commit(note, this.commit.getHash(), tree);
         this.commit = newCommit;
-        Utils.writeContents(Utils.join(Branches, this.head), newCommit.getHash());
-        Utils.writeObject(Utils.join(Commits, newCommit.getHash()), newCommit);
+        this.journal.update(Utils.join(Branches, this.head), commitHash, newCommit.getHash());
+        writeCommit(newCommit);
         branches.replace(this.head, commit, newCommit);
         this.stage.clear();
-        Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
+        this.journal.write(Utils.join(Staging, "stage"), this.stage.encode());
     }
 
     public void remove(String filename) {
         File file = new File(filename);
-        this.stage = Utils.readObject(Utils.join(Staging, "stage"), Staging.class);
+        this.stage = new Staging(Utils.readContents(Utils.join(Staging, "stage")));
         TreeMap<String, String> filesToAdd = this.stage.getAddition();
         TreeMap<String, String> filesToRemove = this.stage.getRemoval();
         String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+        this.commit = readCommit(commitHash);
+        boolean tracked = Tree.lookup(this.db, this.commit.getTree(), filename) != null;
 
-        if (!filesToAdd.containsKey(filename) && !this.commit.getMapping().containsKey(filename)) {
+        if (!filesToAdd.containsKey(filename) && !tracked) {
             System.out.println("No reason to remove the file.");
             return;
         }
         if (filesToAdd.containsKey(filename)) {
             filesToAdd.remove(filename);
-            Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
+            this.journal.write(Utils.join(Staging, "stage"), this.stage.encode());
         }
-        if (this.commit.getMapping().containsKey(filename)) {
+        if (tracked) {
             if (file.exists()) {
-                Utils.restrictedDelete(filename);
+                deleteFile(filename);
+                index().save();
             }
             filesToRemove.put(filename, Utils.sha1(filename));
-            Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
+            this.journal.write(Utils.join(Staging, "stage"), this.stage.encode());
         }
     }
 
-    public void log() {
-        String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
-        while (commit.getParentHash() != null) {
-            System.out.println("===");
-            System.out.println("commit " + commit.getHash());
-            System.out.println("Date: " + commit.getTimestamp());
-            System.out.println(commit.getMessage());
-            System.out.println();
-            String parent = commit.getParentHash();
-            commit = Utils.readObject(Utils.join(Commits, parent), Commit.class);
+    public void log(String[] args) {
+        LogOptions options = LogOptions.parse(args);
+        if (options == null) {
+            System.out.println("Incorrect operands.");
+            return;
         }
-        System.out.println("===");
-        System.out.println("commit " + commit.getHash());
-        System.out.println("Date: " + commit.getTimestamp());
-        System.out.println(commit.getMessage());
-        return;
-    }
-
-    public void global_log() {
-        List<String> commitList = Utils.plainFilenamesIn(Commits);
-        for (int i = 0; i < commitList.size(); i++) {
-            if (i == commitList.size() - 1) {
-                commit = Utils.readObject(Utils.join(Commits, commitList.get(i)), Commit.class);
-                System.out.println("===");
-                System.out.println("commit " + commit.getHash());
-                System.out.println("Date: " + commit.getTimestamp());
-                System.out.println(commit.getMessage());
-            } else {
-                commit = Utils.readObject(Utils.join(Commits, commitList.get(i)), Commit.class);
-                System.out.println("===");
-                System.out.println("commit " + commit.getHash());
-                System.out.println("Date: " + commit.getTimestamp());
-                System.out.println(commit.getMessage());
-                System.out.println();
+        String hash = Utils.readContentsAsString(Utils.join(Branches, this.head));
+        int shown = 0;
+        while (hash != null && shown < options.limit()) {
+            Commit c = readCommit(hash);
+            if (options.before(c.getTime())) {
+                break;
             }
+            if (options.shows(c.getTime())) {
+                String merge = null;
+                if (c.getAllParents().size() > 1) {
+                    merge = c.getAllParents().get(0).substring(0, 7) + " "
+                        + c.getAllParents().get(1).substring(0, 7);
+                }
+                printEntry(options, shown == 0, c.getHash(), merge, c.getTime(), c.getMessage());
+                shown += 1;
+                if (shown % OUTPUT_CHECK_INTERVAL == 0 && System.out.checkError()) {
+                    break;
+                }
+            }
+            hash = c.getParentHash();
         }
     }
 
-    public void find(String msg) {
-        Boolean find = false;
-        List<String> commitList = Utils.plainFilenamesIn(Commits);
-        for (int i = 0; i < commitList.size(); i++) {
-            commit = Utils.readObject(Utils.join(Commits, commitList.get(i)), Commit.class);
-            if (commit.getMessage().equals(msg)) {
-                find = true;
-                System.out.println(commit.getHash());
+    public void global_log(String[] args) {
+        LogOptions options = LogOptions.parse(args);
+        if (options == null) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        int[] shown = {0};
+        commitLog().forEach(r -> {
+            if (shown[0] >= options.limit()) {
+                return false;
+            }
+            if (options.shows(r.getTime())) {
+                printEntry(options, shown[0] == 0, r.getHash(), null, r.getTime(), r.getMessage());
+                shown[0] += 1;
+                if (shown[0] % OUTPUT_CHECK_INTERVAL == 0 && System.out.checkError()) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    public void find(String[] args) {
+        CommitLog.Query query = new CommitLog.Query();
+        try {
+            if (args.length < 2 || (args.length > 2 && args.length % 2 == 0)) {
+                System.out.println("Incorrect operands.");
+                return;
+            }
+            if (args.length == 2) {
+                query.exact(args[1]);
+            }
+            for (int i = 1; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                case "--substring":
+                    query.substring(args[i + 1]);
+                    break;
+                case "--token":
+                    query.tokens(args[i + 1]);
+                    break;
+                case "--since":
+                    query.since(LogOptions.startOfDay(args[i + 1]));
+                    break;
+                case "--until":
+                    query.until(LogOptions.endOfDay(args[i + 1]));
+                    break;
+                default:
+                    System.out.println("Incorrect operands.");
+                    return;
+                }
             }
+        } catch (DateTimeParseException excp) {
+            System.out.println("Incorrect operands.");
+            return;
         }
-        if (!find) {
+        List<CommitLog.Record> found = commitLog().search(query);
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
             return;
         }
+        for (CommitLog.Record r: found) {
+            System.out.println(r.getHash());
+        }
     }
 
     public void status() {
-        this.stage = Utils.readObject(Utils.join(Staging, "stage"), Staging.class);
+        this.stage = new Staging(Utils.readContents(Utils.join(Staging, "stage")));
         TreeMap<String, String> filesToAdd = this.stage.getAddition();
         TreeMap<String, String> filesToRemove = this.stage.getRemoval();
         String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+        this.commit = readCommit(commitHash);
 
         System.out.println("=== Branches ===");
-        List<String> branchList = Utils.plainFilenamesIn(Branches);
+        List<String> branchList = branchNames();
         for (int i = 0; i < branchList.size(); i++) {
             if (branchList.get(i).equals(this.head)) {
                 System.out.println("*" + this.head);
@@ -252,10 +403,45 @@ public class Repository implements Serializable {
         }
         System.out.println();
 
+        TreeMap<String, String> tracked = Tree.flatten(this.db, this.commit.getTree());
+        TreeMap<String, String> modified = new TreeMap<>();
+        TreeSet<String> paths = new TreeSet<>(tracked.keySet());
+        paths.addAll(filesToAdd.keySet());
+        TreeMap<String, String> hashes = workTree().hashes(paths);
+        for (Map.Entry<String, String> entry: tracked.entrySet()) {
+            String file = entry.getKey();
+            String hash = hashes.get(file);
+            if (hash == null) {
+                if (!filesToRemove.containsKey(file)) {
+                    modified.put(file, "deleted");
+                }
+            } else if (!hash.equals(entry.getValue()) && !filesToAdd.containsKey(file)) {
+                modified.put(file, "modified");
+            }
+        }
+        for (Map.Entry<String, String> entry: filesToAdd.entrySet()) {
+            String file = entry.getKey();
+            String hash = hashes.get(file);
+            if (hash == null) {
+                modified.put(file, "deleted");
+            } else if (!hash.equals(entry.getValue())) {
+                modified.put(file, "modified");
+            }
+        }
+        index().save();
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> entry: modified.entrySet()) {
+            System.out.println(entry.getKey() + " (" + entry.getValue() + ")");
+        }
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
+        for (String file: workTree().files()) {
+            if (!filesToAdd.containsKey(file)
+                && (!tracked.containsKey(file) || filesToRemove.containsKey(file))) {
+                System.out.println(file);
+            }
+        }
         System.out.println();
     }
 
@@ -270,84 +456,51 @@ public class Repository implements Serializable {
                 return;
             }
             String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-            this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+            this.commit = readCommit(commitHash);
             String newCommitHash = Utils.readContentsAsString(Utils.join(Branches, args[1]));
-            Commit newCommit = Utils.readObject(Utils.join(Commits, newCommitHash), Commit.class);
-            for (String file: Utils.plainFilenamesIn(CWD)) {
-                if (!this.commit.getMapping().containsKey(file) && newCommit.getMapping().containsKey(file)) {
-                    System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
-                    return;
-                }
-            }
-            for (String file: newCommit.getMapping().keySet()) {
-                if (newCommit.getMapping().keySet().contains(file)) {
-                    String newHash = newCommit.getMapping().get(file);
-                    File newFile = Utils.join(Blobs, newHash);
-                    Utils.writeContents(Utils.join(CWD, file), Utils.readContentsAsString(newFile));
-                }
-            }
-            for (String file: Utils.plainFilenamesIn(CWD)) {
-                if (this.commit.getMapping().containsKey(file) && !newCommit.getMapping().containsKey(file)) {
-                    Utils.restrictedDelete(file);
-                }
+            Commit newCommit = readCommit(newCommitHash);
+            if (!switchTo(newCommit)) {
+                return;
             }
             this.stage.clear();
-            Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
+            this.journal.write(Utils.join(Staging, "stage"), this.stage.encode());
             this.head = args[1];
             this.commit = newCommit;
-            Utils.writeContents(Utils.join(Branches, "head"), args[1]);
+            this.journal.write(Utils.join(Branches, "head"), args[1]);
         } else if (args.length == 3) {
             if (!args[1].equals("--")) {
                 System.out.println("Incorrect operands.");
                 return;
             }
             String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-            commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+            commit = readCommit(commitHash);
             String filename = args[2];
-            String hash = commit.getMapping().get(filename);
+            String hash = Tree.lookup(this.db, commit.getTree(), filename);
             if (hash == null) {
                 System.out.println("File does not exist in that commit.");
                 return;
             } else {
-                String overwrite = Utils.readContentsAsString(Utils.join(Blobs, hash));
-                Utils.writeContents(new File(filename), overwrite);
+                writeFile(filename, hash);
+                index().save();
             }
         } else if (args.length == 4) {
-            List<String> commitList = Utils.plainFilenamesIn(Commits);
-            boolean found = false;
-            String fullCommitID = null;
-            String commitID = args[1];
+            String fullCommitID = resolveCommit(args[1]);
             String filename = args[3];
-            for (String file: commitList) {
-                if ((file.substring(0, commitID.length())).equals(commitID)) {
-                    found = true;
-                    fullCommitID = file;
-                    break;
-                }
-            }
-            if (!found) {
-                System.out.println("No commit with that id exists.");
+            if (fullCommitID == null) {
                 return;
             }
             if (!args[2].equals("--")) {
                 System.out.println("Incorrect operands.");
                 return;
             }
-            if (!commit.getMapping().containsKey(filename)) {
+            commit = readCommit(fullCommitID);
+            String newHash = Tree.lookup(this.db, commit.getTree(), filename);
+            if (newHash == null) {
                 System.out.println("File does not exist in that commit.");
                 return;
             }
-            String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-            commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
-            String[] listOfCommits = Commits.list();
-            for (String hash: listOfCommits) {
-                if (commitID.equals(hash.substring(0, commitID.length()))) {
-                    commit = Utils.readObject(Utils.join(Commits, fullCommitID), Commit.class);
-                }
-            }
-            String newHash = commit.getMapping().get(filename);
-            String newBlob = Utils.readContentsAsString(Utils.join(Blobs, newHash));
-            Utils.writeContents(new File(filename), newBlob);
+            writeFile(filename, newHash);
+            index().save();
         } else {
             System.out.println("Incorrect number of arguments.");
             return;
@@ -355,19 +508,19 @@ public class Repository implements Serializable {
     }
 
     public void branch(String newBranch) {
-        List<String> branchList = Utils.plainFilenamesIn(Branches);
+        List<String> branchList = branchNames();
         if (branchList.contains(newBranch)) {
             System.out.println("A branch with that name already exists.");
             return;
         }
         String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+        this.commit = readCommit(commitHash);
         branches.put(newBranch, this.commit);
-        Utils.writeContents(Utils.join(Branches, newBranch), commitHash);
+        this.journal.write(Utils.join(Branches, newBranch), commitHash);
     }
 
     public void rm_branch(String branch) {
-        List<String> branchList = Utils.plainFilenamesIn(Branches);
+        List<String> branchList = branchNames();
         if (!branchList.contains(branch)) {
             System.out.println("A branch with that name does not exist.");
             return;
@@ -376,45 +529,36 @@ public class Repository implements Serializable {
             System.out.println("Cannot remove the current branch.");
             return;
         }
-        Utils.join(Branches, branch).delete();
+        this.journal.delete(Utils.join(Branches, branch));
         branches.remove(branch);
     }
 
-    public void reset(String commitID) {
-        List<String> commitList = Utils.plainFilenamesIn(Commits);
-        if (!commitList.contains(commitID)) {
-            System.out.println("No commit with that id exists.");
+    public void reset(String prefix) {
+        String commitID = resolveCommit(prefix);
+        if (commitID == null) {
             return;
         }
         String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
-        Commit newCommit = Utils.readObject(Utils.join(Commits, commitID), Commit.class);
-        for (String file: Utils.plainFilenamesIn(CWD)) {
-            if (!this.commit.getMapping().containsKey(file) && newCommit.getMapping().containsKey(file)) {
-                System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
-                return;
-            }
-        }
-        for (String file: Utils.plainFilenamesIn(CWD)) {
-            if (this.commit.getMapping().containsKey(file) && !newCommit.getMapping().containsKey(file)) {
-                Utils.restrictedDelete(file);
-            }
+        this.commit = readCommit(commitHash);
+        Commit newCommit = readCommit(commitID);
+        if (!switchTo(newCommit)) {
+            return;
         }
         this.stage.clear();
-        Utils.writeObject(Utils.join(Staging, "stage"), this.stage);
+        this.journal.write(Utils.join(Staging, "stage"), this.stage.encode());
         this.commit = newCommit;
-        Utils.writeContents(Utils.join(Branches, this.head), commitID);
+        this.journal.update(Utils.join(Branches, this.head), commitHash, commitID);
     }
 
     public void merge(String branch) {
-        this.stage = Utils.readObject(Utils.join(Staging, "stage"), Staging.class);
+        this.stage = new Staging(Utils.readContents(Utils.join(Staging, "stage")));
         TreeMap<String, String> filesToAdd = this.stage.getAddition();
         TreeMap<String, String> filesToRemove = this.stage.getRemoval();
         if (!filesToAdd.isEmpty() || !filesToRemove.isEmpty()) {
             System.out.println("You have uncommitted changes.");
             return;
         }
-        List<String> branchList = Utils.plainFilenamesIn(Branches);
+        List<String> branchList = branchNames();
         if (!branchList.contains(branch)) {
             System.out.println("A branch with that name does not exist.");
             return;
@@ -424,55 +568,486 @@ public class Repository implements Serializable {
             return;
         }
         String commitHash = Utils.readContentsAsString(Utils.join(Branches, this.head));
-        this.commit = Utils.readObject(Utils.join(Commits, commitHash), Commit.class);
+        this.commit = readCommit(commitHash);
         String newCommitHash = Utils.readContentsAsString(Utils.join(Branches, branch));
-        Commit newCommit = Utils.readObject(Utils.join(Commits, newCommitHash), Commit.class);
-        for (String file: Utils.plainFilenamesIn(CWD)) {
-            if (!this.commit.getMapping().containsKey(file) && newCommit.getMapping().containsKey(file)) {
-                System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
+        Commit newCommit = readCommit(newCommitHash);
+        TreeMap<String, String> changes = Tree.diff(this.db, this.commit.getTree(), newCommit.getTree());
+        if (untrackedInTheWay(changes)) {
+            System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
+            return;
+        }
+
+        graph().ensure(commitHash, this::readCommit);
+        graph().ensure(newCommitHash, this::readCommit);
+        List<String> splits = mergeBase().find(commitHash, newCommitHash);
+        if (splits.isEmpty()) {
+            throw Utils.error("Given branch has no common ancestor with the current branch.");
+        }
+        String splitHash = splits.get(0);
+        if (newCommitHash.equals(splitHash)) {
+            System.out.println("Given branch is an ancestor of the current branch.");
+            return;
+        }
+
+        if (commitHash.equals(splitHash)) {
+            applyChanges(changes);
+            this.journal.update(Utils.join(Branches, this.head), commitHash, newCommitHash);
+            System.out.println("Current branch fast-forwarded.");
+            return;
+        }
+
+        Merger merger = new Merger(this.db);
+        TreeMap<String, String> merged = merger.merge(readCommit(splitHash).getTree(),
+                                                      this.commit.getTree(), newCommit.getTree());
+        for (Map.Entry<String, byte[]> content: merger.contents().entrySet()) {
+            String path = content.getKey();
+            File file = Utils.join(CWD, path);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, content.getValue());
+            this.db.writeBlob(merged.get(path), file);
+            index().record(path, file, merged.get(path));
+            workTree().update(path, merged.get(path));
+        }
+        TreeMap<String, String> rest = new TreeMap<>(merged);
+        rest.keySet().removeAll(merger.contents().keySet());
+        applyChanges(rest);
+
+        String tree = Tree.update(this.db, this.commit.getTree(), merged);
+        Commit mergeCommit = new Commit("Merged " + branch + " into " + this.head + ".", commitHash, tree);
+        mergeCommit.addParent(newCommitHash);
+        this.journal.update(Utils.join(Branches, this.head), commitHash, mergeCommit.getHash());
+        writeCommit(mergeCommit);
+        branches.replace(this.head, this.commit, mergeCommit);
+        this.commit = mergeCommit;
+        if (!merger.conflicts().isEmpty()) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    public void merge_base(String first, String second) {
+        String a = resolve(first);
+        if (a == null) {
+            return;
+        }
+        String b = resolve(second);
+        if (b == null) {
+            return;
+        }
+        graph().ensure(a, this::readCommit);
+        graph().ensure(b, this::readCommit);
+        for (String hash: mergeBase().find(a, b)) {
+            System.out.println(hash);
+        }
+    }
+
+    public void repack() {
+        this.blobs.repack(deltaBases());
+        this.commits.repack(new HashMap<String, String>());
+        this.trees.repack(new HashMap<String, String>());
+    }
+
+    public void gc(String[] args) {
+        long grace = GarbageCollector.GRACE_MILLIS;
+        if (args.length == 3 && args[1].equals("--grace")) {
+            try {
+                grace = Math.multiplyExact(Long.parseLong(args[2]), 1000);
+            } catch (NumberFormatException | ArithmeticException excp) {
+                grace = -1;
+            }
+        }
+        if ((args.length != 1 && args.length != 3) || grace < 0) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        ArrayList<String> refs = new ArrayList<>();
+        for (String branch: branchNames()) {
+            if (!branch.equals("head")) {
+                refs.add(Utils.readContentsAsString(Utils.join(Branches, branch)));
+            }
+        }
+        GarbageCollector collector = new GarbageCollector(this.blobs, this.commits, this.trees);
+        collector.mark(refs, this.stage.getAddition().values(), System.currentTimeMillis() - grace);
+        long before = collector.size();
+        bumpGcGeneration();
+        int removed = collector.sweep(this::deltaBases);
+        if (removed > 0) {
+            CommitIds.delete();
+            new CommitLog(CommitLogDir).clear();
+            this.db = new CachedObjectDatabase(this.blobs, this.commits, this.trees);
+        }
+        System.out.println("Removed " + removed + " objects, reclaiming "
+                           + (before - collector.size()) + " bytes.");
+    }
+
+    public void add_remote(String name, String path) {
+        File remote = Utils.join(Remotes, name);
+        if (remote.exists()) {
+            System.out.println("A remote with that name already exists.");
+            return;
+        }
+        this.journal.write(remote, path);
+    }
+
+    public void rm_remote(String name) {
+        File remote = Utils.join(Remotes, name);
+        if (!remote.isFile()) {
+            System.out.println("A remote with that name does not exist.");
+            return;
+        }
+        this.journal.delete(remote);
+    }
+
+    public void push(String name, String branch) {
+        File dir = remoteDir(name);
+        if (dir == null) {
+            return;
+        }
+        try (RepoLock lock = lockRemote(dir, false)) {
+            if (lock == null) {
+                return;
+            }
+            Journal.recover(Utils.join(dir, "journal"));
+            Remote remote = Remote.open(dir);
+            String head = Utils.readContentsAsString(Utils.join(Branches, this.head));
+            String remoteHead = remote.branch(branch);
+            if (remoteHead != null && !isAncestor(remoteHead, head)) {
+                System.out.println("Please pull down remote changes before pushing.");
                 return;
             }
+            try {
+                Remote.copy(local(), remote, head);
+                remote.journal().update(remote.ref(branch), remoteHead, head);
+                remote.journal().commit();
+            } catch (RuntimeException excp) {
+                remote.journal().abandon();
+                throw excp;
+            }
         }
+    }
 
-        Commit currCommitTemp = this.commit;
-        Commit newCommitTemp = newCommit;
-        Commit splitCommit = null;
-        while (currCommitTemp.getParentHash() != null) {
-            while (newCommitTemp.getParentHash() != null) {
-                if (currCommitTemp.getHash().equals(newCommitTemp.getHash())) {
-                    splitCommit = currCommitTemp;
-                    break;
+    public void fetch(String name, String branch) {
+        fetchBranch(name, branch);
+    }
+
+    public void pull(String name, String branch) {
+        if (!fetchBranch(name, branch)) {
+            return;
+        }
+        this.journal.commit();
+        merge(name + "/" + branch);
+    }
+
+    public static void migrate() {
+        Journal journal = new Journal(JournalFile);
+        ObjectStore blobs = new ObjectStore(Blobs);
+        ObjectStore commits = new ObjectStore(Commits);
+        ObjectStore trees = new ObjectStore(Trees);
+        blobs.setJournal(journal);
+        commits.setJournal(journal);
+        trees.setJournal(journal);
+        ObjectDatabase db = new CachedObjectDatabase(blobs, commits, trees);
+        CommitIds.delete();
+        new CommitLog(CommitLogDir).clear();
+        int count;
+        try {
+            count = Migration.migrate(commits, db, journal, Branches,
+                                      Utils.join(Staging, "stage"));
+        } catch (RuntimeException excp) {
+            journal.abandon();
+            throw excp;
+        }
+        System.out.println("Migrated " + count + " commits.");
+    }
+
+    private boolean findPaths(String name, TreeSet<String> paths) {
+        File file = Utils.join(CWD, name);
+        Path relative = CWD.toPath().relativize(file.toPath().normalize());
+        String path = relative.toString().replace(File.separatorChar, '/');
+        if (!path.equals("..") && !path.startsWith("../")) {
+            if (file.isFile()) {
+                paths.add(path);
+                return true;
+            }
+            if (file.isDirectory()) {
+                String prefix = path.isEmpty() ? "" : path + "/";
+                paths.addAll(workTree().files().subSet(prefix, prefix + Character.MAX_VALUE));
+                return true;
+            }
+        }
+        if (!name.matches(".*[*?\\[{].*")) {
+            return false;
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+        boolean found = false;
+        for (String candidate: workTree().files()) {
+            if (matcher.matches(Paths.get(candidate))) {
+                paths.add(candidate);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    static List<String> branchNames() {
+        ArrayList<String> result = new ArrayList<>(Utils.plainFilenamesIn(Branches));
+        File[] remotes = Branches.listFiles(File::isDirectory);
+        if (remotes != null) {
+            for (File remote: remotes) {
+                for (String branch: Utils.plainFilenamesIn(remote)) {
+                    result.add(remote.getName() + "/" + branch);
                 }
-                newCommitTemp = Utils.readObject(Utils.join(Commits, newCommitTemp.getParentHash()), Commit.class);
             }
-            currCommitTemp = Utils.readObject(Utils.join(Commits, currCommitTemp.getParentHash()), Commit.class);
-            newCommitTemp = newCommit;
         }
+        Collections.sort(result);
+        return result;
+    }
 
-        if (splitCommit.getHash().equals(this.commit.getHash())) {
-            Utils.writeContents(Utils.join(Branches, this.head), newCommitHash);
-            System.out.println("Current branch fast-forwarded.");
-            return;
+    private boolean fetchBranch(String name, String branch) {
+        File dir = remoteDir(name);
+        if (dir == null) {
+            return false;
         }
-        if (splitCommit.getHash().equals(newCommit.getHash())) {
-            System.out.println("Given branch is an ancestor of the current branch.");
+        try (RepoLock lock = lockRemote(dir, true)) {
+            if (lock == null) {
+                return false;
+            }
+            Remote remote = Remote.open(dir);
+            String remoteHead = remote.branch(branch);
+            if (remoteHead == null) {
+                System.out.println("That remote does not have that branch.");
+                return false;
+            }
+            Remote.copy(remote, local(), remoteHead);
+            this.journal.write(Utils.join(Branches, name, branch), remoteHead);
+            return true;
+        }
+    }
+
+    private File remoteDir(String name) {
+        File remote = Utils.join(Remotes, name);
+        if (!remote.isFile()) {
+            System.out.println("A remote with that name does not exist.");
+            return null;
+        }
+        String path = Utils.readContentsAsString(remote).replace("/", File.separator);
+        File dir = new File(path);
+        if (!dir.isAbsolute()) {
+            dir = Utils.join(CWD, path);
+        }
+        if (!dir.isDirectory()) {
+            System.out.println("Remote directory not found.");
+            return null;
+        }
+        return dir;
+    }
+
+    private RepoLock lockRemote(File dir, boolean shared) {
+        RepoLock lock = RepoLock.tryAcquire(Utils.join(dir, "lock"), shared, REMOTE_LOCK_MILLIS);
+        if (lock == null) {
+            System.out.println("The remote repository is busy; try again later.");
+        }
+        return lock;
+    }
+
+    private Remote local() {
+        return new Remote(Gitlet, this.blobs, this.commits, this.trees, this.db, this.journal);
+    }
+
+    private boolean isAncestor(String ancestor, String hash) {
+        if (!this.db.hasCommit(ancestor)) {
+            return false;
+        }
+        graph().ensure(ancestor, this::readCommit);
+        graph().ensure(hash, this::readCommit);
+        return mergeBase().isAncestor(ancestor, hash);
+    }
+
+    private void printEntry(LogOptions options, boolean first, String hash, String merge,
+                            long time, String message) {
+        if (options.oneline()) {
+            System.out.println(commitIndex().abbreviate(hash, 7) + " " + message);
             return;
         }
+        if (!first) {
+            System.out.println();
+        }
+        System.out.println("===");
+        System.out.println("commit " + hash);
+        if (merge != null) {
+            System.out.println("Merge: " + merge);
+        }
+        System.out.println("Date: " + Commit.formatTime(time));
+        System.out.println(message);
+    }
+
+    private static void bumpGcGeneration() {
+        long generation = 0;
+        if (GcGeneration.isFile()) {
+            generation = Long.parseLong(Utils.readContentsAsString(GcGeneration).trim());
+        }
+        Utils.writeContents(GcGeneration, Long.toString(generation + 1));
+    }
+
+    private HashMap<String, String> deltaBases() {
+        HashMap<String, String> bases = new HashMap<>();
+        for (String hash: this.db.listCommits()) {
+            Commit c = readCommit(hash);
+            if (c.getParentHash() == null) {
+                continue;
+            }
+            String previous = readCommit(c.getParentHash()).getTree();
+            for (Map.Entry<String, String> change: Tree.diff(this.db, previous, c.getTree()).entrySet()) {
+                String old = Tree.lookup(this.db, previous, change.getKey());
+                if (old != null && change.getValue() != null) {
+                    bases.putIfAbsent(change.getValue(), old);
+                }
+            }
+        }
+        return bases;
+    }
+
+    private CommitGraph graph() {
+        if (this.graph == null) {
+            this.graph = new CommitGraph(Graph);
+        }
+        return this.graph;
+    }
+
+    private Index index() {
+        if (this.index == null) {
+            this.index = new Index(IndexFile);
+        }
+        return this.index;
+    }
+
+    private WorkTree workTree() {
+        if (this.workTree == null) {
+            this.workTree = WorkTree.scan(CWD, index());
+        }
+        return this.workTree;
+    }
+
+    private boolean untrackedInTheWay(Map<String, String> changes) {
+        for (Map.Entry<String, String> change: changes.entrySet()) {
+            if (change.getValue() != null && workTree().contains(change.getKey())
+                && Tree.lookup(this.db, this.commit.getTree(), change.getKey()) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean switchTo(Commit target) {
+        TreeMap<String, String> changes = Tree.diff(this.db, this.commit.getTree(), target.getTree());
+        if (untrackedInTheWay(changes)) {
+            System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
+            return false;
+        }
+        applyChanges(changes);
+        return true;
+    }
+
+    private void applyChanges(Map<String, String> changes) {
+        for (Map.Entry<String, String> change: changes.entrySet()) {
+            if (change.getValue() == null) {
+                deleteFile(change.getKey());
+            }
+        }
+        for (Map.Entry<String, String> change: changes.entrySet()) {
+            if (change.getValue() != null) {
+                writeFile(change.getKey(), change.getValue());
+            }
+        }
+        index().save();
+    }
+
+    private void writeFile(String path, String hash) {
+        File file = Utils.join(CWD, path);
+        String current = this.workTree != null ? this.workTree.hash(path) : index().hash(path, file);
+        if (!hash.equals(current)) {
+            file.getParentFile().mkdirs();
+            this.db.copyBlob(hash, file);
+            index().record(path, file, hash);
+        }
+        if (this.workTree != null) {
+            this.workTree.update(path, hash);
+        }
+    }
+
+    private void deleteFile(String path) {
+        File file = Utils.join(CWD, path);
+        file.delete();
+        for (File dir = file.getParentFile(); !dir.equals(CWD) && dir.delete(); dir = dir.getParentFile()) {
+            continue;
+        }
+        index().forget(path);
+        if (this.workTree != null) {
+            this.workTree.update(path, null);
+        }
+    }
+
+    private MergeBase mergeBase() {
+        return new MergeBase(graph(), this::readCommit);
+    }
 
-        for (String file: Utils.plainFilenamesIn(CWD)) {
-            if (this.commit.getMapping().containsKey(file) && !newCommit.getMapping().containsKey(file)) {
-                Utils.restrictedDelete(file);
+    private String resolve(String name) {
+        File ref = Utils.join(Branches, name);
+        if (ref.isFile()) {
+            return Utils.readContentsAsString(ref);
+        }
+        return resolveCommit(name);
+    }
+
+    private String resolveCommit(String prefix) {
+        List<String> found = commitIndex().matches(prefix, 2);
+        if (found.isEmpty()) {
+            commitIndex().rebuild(this.db.listCommits());
+            found = commitIndex().matches(prefix, 2);
+        }
+        if (found.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+            return null;
+        }
+        if (found.size() > 1) {
+            System.out.println("Commit id " + prefix + " is ambiguous.");
+            return null;
+        }
+        return found.get(0);
+    }
+
+    private CommitLog commitLog() {
+        if (this.commitLog == null) {
+            this.commitLog = new CommitLog(CommitLogDir);
+            if (!this.commitLog.isValid()) {
+                ArrayList<Commit> all = new ArrayList<>();
+                for (String hash: this.db.listCommits()) {
+                    all.add(readCommit(hash));
+                }
+                this.commitLog.rebuild(all);
             }
         }
-        for (String file: newCommit.getMapping().keySet()) {
-            if (newCommit.getMapping().keySet().contains(file)) {
-                String newHash = newCommit.getMapping().get(file);
-                File newFile = Utils.join(Blobs, newHash);
-                Utils.writeContents(Utils.join(CWD, file), Utils.readContentsAsString(newFile));
+        return this.commitLog;
+    }
+
+    private CommitIndex commitIndex() {
+        if (this.commitIndex == null) {
+            this.commitIndex = new CommitIndex(CommitIds);
+            if (!this.commitIndex.isValid()) {
+                this.commitIndex.rebuild(this.db.listCommits());
             }
         }
-        System.out.println("Current branch fast-forwarded.");
-        return;
+        return this.commitIndex;
+    }
+
+    private Commit readCommit(String hash) {
+        return this.db.readCommit(hash);
+    }
+
+    private void writeCommit(Commit c) {
+        this.db.writeCommit(c);
+        this.journal.append(CommitIds, () -> new CommitIndex(CommitIds).add(c.getHash()));
+        this.journal.append(CommitLogDir, () -> new CommitLog(CommitLogDir).append(c));
+        this.journal.append(Graph, () -> CommitGraph.append(Graph, c));
     }
 
 }
@@ -1,9 +1,23 @@
 package gitlet;
 
-import java.io.Serializable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
 import java.util.TreeMap;
 
-public class Staging implements Serializable {
+/** The staging area, stored as a format version byte followed by the
+ *  additions and then the removals, each as a count and a list of file
+ *  names with their hexadecimal blob hashes.  Names and hashes alike are
+ *  written by Commit.writeString, as length-prefixed UTF-8 strings.
+ *  @author Kelvin Mo
+ */
+public class Staging {
+
+    /** Version of the encoding written by this class. */
+    static final int FORMAT_VERSION = 1;
 
     /** A treemap to record the filename and hashcode added to stage. */
     private TreeMap<String, String> addition;
@@ -16,6 +30,60 @@ public class Staging implements Serializable {
         this.removal = new TreeMap<>();
     }
 
+    /** A staging area decoded from ENCODED, as produced by encode(). */
+    public Staging(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] != FORMAT_VERSION) {
+            throw Utils.error("Unsupported staging format; run 'migrate' first.");
+        }
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(encoded));
+            in.readByte();
+            this.addition = readEntries(in);
+            this.removal = readEntries(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the encoding of this staging area. */
+    public byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            writeEntries(out, this.addition);
+            writeEntries(out, this.removal);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write ENTRIES to OUT. */
+    private static void writeEntries(DataOutputStream out,
+                                     TreeMap<String, String> entries)
+        throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            Commit.writeString(out, entry.getKey());
+            Commit.writeString(out, entry.getValue());
+        }
+    }
+
+    /** Return entries written by writeEntries from IN. */
+    private static TreeMap<String, String> readEntries(DataInputStream in)
+        throws IOException {
+        TreeMap<String, String> result = new TreeMap<>();
+        int size = in.readInt();
+        for (int i = 0; i < size; i += 1) {
+            String name = Commit.readString(in);
+            result.put(name, Commit.readString(in));
+        }
+        return result;
+    }
+
     public TreeMap<String, String> getAddition() {
         return this.addition;
     }
@@ -0,0 +1,303 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** A directory snapshot: the blobs of the files directly inside one
+ *  directory and the trees of its subdirectories, each keyed by name.  A
+ *  tree is stored under the hash of its encoding, so directories whose
+ *  contents did not change share one tree across commits, and two
+ *  snapshots whose tree hashes are equal can be skipped without looking
+ *  inside.  Paths handed to the static methods are relative to the root
+ *  tree, with '/' separating directories.
+ *  @author Kelvin Mo
+ */
+class Tree {
+
+    /** Version of the encoding written by this class. */
+    static final int FORMAT_VERSION = 1;
+
+    /** A treemap from the names of the files in this directory to their
+     *  blob hashes. */
+    private TreeMap<String, String> files;
+
+    /** A treemap from the names of the subdirectories of this directory
+     *  to their tree hashes. */
+    private TreeMap<String, String> dirs;
+
+    /** An empty tree. */
+    Tree() {
+        this.files = new TreeMap<>();
+        this.dirs = new TreeMap<>();
+    }
+
+    /** A tree decoded from ENCODED, as produced by encode(). */
+    Tree(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] != FORMAT_VERSION) {
+            throw Utils.error("Unsupported tree format.");
+        }
+        long start = Metrics.start();
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(encoded));
+            in.readByte();
+            this.files = readEntries(in);
+            this.dirs = readEntries(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Metrics.record(Metrics.Op.TREE_DECODE, start, encoded.length);
+    }
+
+    /** Return the encoding of this tree. */
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            writeEntries(out, this.files);
+            writeEntries(out, this.dirs);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write ENTRIES to OUT. */
+    private static void writeEntries(DataOutputStream out,
+                                     TreeMap<String, String> entries)
+        throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            Commit.writeString(out, entry.getKey());
+            out.write(Pack.toBytes(entry.getValue()));
+        }
+    }
+
+    /** Return entries written by writeEntries from IN. */
+    private static TreeMap<String, String> readEntries(DataInputStream in)
+        throws IOException {
+        TreeMap<String, String> result = new TreeMap<>();
+        int size = in.readInt();
+        for (int i = 0; i < size; i += 1) {
+            String name = Commit.readString(in);
+            result.put(name, Pack.toHex(in.readNBytes(Pack.HASH_BYTES)));
+        }
+        return result;
+    }
+
+    /** Return the tree HASH from DB, or an empty tree if HASH is null.
+     *  The result may be shared and must not be modified. */
+    static Tree read(ObjectDatabase db, String hash) {
+        return hash == null ? new Tree() : db.readTree(hash);
+    }
+
+    /** Store this tree in DB and return its hash. */
+    String write(ObjectDatabase db) {
+        return db.writeTree(this);
+    }
+
+    /** Return a copy of this tree that may be modified. */
+    private Tree copy() {
+        Tree result = new Tree();
+        result.files.putAll(this.files);
+        result.dirs.putAll(this.dirs);
+        return result;
+    }
+
+    /** Return true iff this tree has no entries. */
+    boolean isEmpty() {
+        return this.files.isEmpty() && this.dirs.isEmpty();
+    }
+
+    /** Store in DB the trees for the files in MAPPING, a treemap from
+     *  paths to blob hashes, and return the hash of the root tree. */
+    static String write(ObjectDatabase db, Map<String, String> mapping) {
+        return update(db, null, mapping);
+    }
+
+    /** Return the hash of the root tree obtained from the tree ROOT in
+     *  DB by applying CHANGES, a treemap from paths to their new blob
+     *  hashes, or to null for paths that are removed.  Only the trees
+     *  along changed paths are read and written; directories left empty
+     *  are dropped. */
+    static String update(ObjectDatabase db, String root,
+                         Map<String, String> changes) {
+        String result = updateDir(db, root, changes);
+        return result != null ? result : new Tree().write(db);
+    }
+
+    /** Return the hash of the tree obtained from the tree DIR by applying
+     *  CHANGES, whose paths are relative to DIR, or null if it ends up
+     *  empty. */
+    private static String updateDir(ObjectDatabase db, String dir,
+                                    Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return dir;
+        }
+        Tree tree = read(db, dir).copy();
+        TreeMap<String, TreeMap<String, String>> below = new TreeMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (change.getValue() == null) {
+                    tree.files.remove(path);
+                } else {
+                    tree.files.put(path, change.getValue());
+                    tree.dirs.remove(path);
+                }
+            } else {
+                below.computeIfAbsent(path.substring(0, slash),
+                                      k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), change.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> sub : below.entrySet()) {
+            String name = sub.getKey();
+            String hash = updateDir(db, tree.dirs.get(name), sub.getValue());
+            if (hash == null) {
+                tree.dirs.remove(name);
+            } else {
+                tree.dirs.put(name, hash);
+                tree.files.remove(name);
+            }
+        }
+        return tree.isEmpty() ? null : tree.write(db);
+    }
+
+    /** Return the blob hash of the file at PATH under the tree ROOT in
+     *  DB, or null if there is no such file.  Only the trees along PATH
+     *  are read. */
+    static String lookup(ObjectDatabase db, String root, String path) {
+        String[] names = path.split("/");
+        Tree tree = read(db, root);
+        for (int i = 0; i < names.length - 1; i += 1) {
+            String sub = tree.dirs.get(names[i]);
+            if (sub == null) {
+                return null;
+            }
+            tree = read(db, sub);
+        }
+        return tree.files.get(names[names.length - 1]);
+    }
+
+    /** Return a treemap from the path of every file under the tree ROOT in
+     *  DB to its blob hash. */
+    static TreeMap<String, String> flatten(ObjectDatabase db, String root) {
+        TreeMap<String, String> result = new TreeMap<>();
+        flatten(db, root, "", result);
+        return result;
+    }
+
+    /** Add every file under the tree DIR, whose path is PREFIX, to
+     *  RESULT. */
+    private static void flatten(ObjectDatabase db, String dir, String prefix,
+                                TreeMap<String, String> result) {
+        Tree tree = read(db, dir);
+        for (Map.Entry<String, String> file : tree.files.entrySet()) {
+            result.put(prefix + file.getKey(), file.getValue());
+        }
+        for (Map.Entry<String, String> sub : tree.dirs.entrySet()) {
+            flatten(db, sub.getValue(), prefix + sub.getKey() + "/", result);
+        }
+    }
+
+    /** Add to TREES the tree ROOT and every tree under it, and to BLOBS
+     *  every blob they hold, reading trees from STORE.  Trees already in
+     *  TREES are skipped with everything under them, so several threads
+     *  may mark from different roots into the same concurrent sets. */
+    static void mark(ObjectStore store, String root, Set<String> trees,
+                     Set<String> blobs) {
+        ArrayDeque<String> todo = new ArrayDeque<>();
+        todo.push(root);
+        while (!todo.isEmpty()) {
+            String hash = todo.pop();
+            if (!trees.add(hash)) {
+                continue;
+            }
+            Tree tree = new Tree(store.read(hash));
+            blobs.addAll(tree.files.values());
+            for (String sub : tree.dirs.values()) {
+                todo.push(sub);
+            }
+        }
+    }
+
+    /** Add to TREES the tree ROOT in DB and every tree under it, and to
+     *  BLOBS every blob under it, that HAVE lacks and that TREES and BLOBS
+     *  do not yet hold.  Trees that HAVE holds are not read. */
+    static void missing(ObjectDatabase db, String root, ObjectDatabase have,
+                        Set<String> trees, Set<String> blobs) {
+        if (trees.contains(root) || have.hasTree(root)) {
+            return;
+        }
+        trees.add(root);
+        Tree tree = read(db, root);
+        for (String blob : tree.files.values()) {
+            if (!blobs.contains(blob) && !have.hasBlob(blob)) {
+                blobs.add(blob);
+            }
+        }
+        for (String sub : tree.dirs.values()) {
+            missing(db, sub, have, trees, blobs);
+        }
+    }
+
+    /** Return the changes that turn the tree FROM into the tree TO, both
+     *  in DB, in the form taken by update: a treemap from each path
+     *  whose blob differs to its blob in TO, or to null if it is absent
+     *  from TO.  Subtrees with equal hashes are skipped unread. */
+    static TreeMap<String, String> diff(ObjectDatabase db, String from,
+                                        String to) {
+        TreeMap<String, String> result = new TreeMap<>();
+        diff(db, from, to, "", result);
+        return result;
+    }
+
+    /** Add to RESULT the changes turning the tree FROM into the tree TO,
+     *  either of which may be null, where both trees have path PREFIX. */
+    private static void diff(ObjectDatabase db, String from, String to,
+                             String prefix, TreeMap<String, String> result) {
+        if (from != null && from.equals(to)) {
+            return;
+        }
+        Tree a = read(db, from);
+        Tree b = read(db, to);
+        TreeSet<String> names = new TreeSet<>(a.files.keySet());
+        names.addAll(b.files.keySet());
+        for (String name : names) {
+            String blob = b.files.get(name);
+            if (blob == null) {
+                if (!b.dirs.containsKey(name)) {
+                    result.put(prefix + name, null);
+                }
+            } else if (!blob.equals(a.files.get(name))) {
+                result.put(prefix + name, blob);
+            }
+        }
+        names = new TreeSet<>(a.dirs.keySet());
+        names.addAll(b.dirs.keySet());
+        for (String name : names) {
+            if (b.files.containsKey(name)) {
+                diff(db, a.dirs.get(name), null, prefix + name + "/", result);
+            } else {
+                if (a.files.containsKey(name)) {
+                    result.put(prefix + name, null);
+                }
+                diff(db, a.dirs.get(name), b.dirs.get(name),
+                     prefix + name + "/", result);
+            }
+        }
+    }
+
+}
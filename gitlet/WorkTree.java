@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** A snapshot of the files in a working directory, taken once per
+ *  command.  The directory is walked recursively, one fork/join task per
+ *  subdirectory, skipping whatever the IgnoreRules ignore and never
+ *  following symbolic links to directories.  Files are hashed on demand,
+ *  in parallel, through the stat-cache Index, so unchanged files are not
+ *  read.  Paths are relative to the working directory, with '/'
+ *  separating directories.
+ *  @author Kelvin Mo
+ */
+class WorkTree {
+
+    /** The working directory. */
+    private final File root;
+
+    /** The index used to hash files. */
+    private final Index index;
+
+    /** Paths of all files found, in order. */
+    private final TreeSet<String> files;
+
+    /** Hashes computed so far, by path. */
+    private final ConcurrentHashMap<String, String> hashes;
+
+    /** A snapshot of the files under ROOT, hashed through INDEX. */
+    private WorkTree(File root, Index index, TreeSet<String> files) {
+        this.root = root;
+        this.index = index;
+        this.files = files;
+        this.hashes = new ConcurrentHashMap<>();
+    }
+
+    /** Return a snapshot of the files under ROOT that are not ignored,
+     *  hashed through INDEX. */
+    static WorkTree scan(File root, Index index) {
+        IgnoreRules rules = new IgnoreRules(root);
+        List<String> found = ForkJoinPool.commonPool()
+            .invoke(new Scan(root, "", rules));
+        return new WorkTree(root, index, new TreeSet<>(found));
+    }
+
+    /** Return the paths of all files in this snapshot, in order. */
+    NavigableSet<String> files() {
+        return Collections.unmodifiableNavigableSet(this.files);
+    }
+
+    /** Return true iff this snapshot holds a file at PATH. */
+    boolean contains(String path) {
+        return this.files.contains(path);
+    }
+
+    /** Return the blob hash of the working file at PATH, which need not be
+     *  in this snapshot, or null if there is no such file. */
+    String hash(String path) {
+        String result = this.hashes.get(path);
+        if (result == null) {
+            result = this.index.hash(path, Utils.join(this.root, path));
+            if (result != null) {
+                this.hashes.put(path, result);
+            }
+        }
+        return result;
+    }
+
+    /** Return a treemap from each of PATHS that names a working file to
+     *  its blob hash, hashing the files in parallel. */
+    TreeMap<String, String> hashes(Collection<String> paths) {
+        paths.parallelStream().forEach(this::hash);
+        TreeMap<String, String> result = new TreeMap<>();
+        for (String path : paths) {
+            String hash = this.hashes.get(path);
+            if (hash != null) {
+                result.put(path, hash);
+            }
+        }
+        return result;
+    }
+
+    /** Note that the working file at PATH was just written with blob HASH,
+     *  or deleted if HASH is null. */
+    void update(String path, String hash) {
+        if (hash == null) {
+            this.files.remove(path);
+            this.hashes.remove(path);
+        } else {
+            this.files.add(path);
+            this.hashes.put(path, hash);
+        }
+    }
+
+    /** A task listing the files under one directory. */
+    private static class Scan extends RecursiveTask<List<String>> {
+        /** The serial version of this class. */
+        private static final long serialVersionUID = 1L;
+        /** The directory to list. */
+        private final File dir;
+        /** Path of DIR, empty or ending in '/'. */
+        private final String prefix;
+        /** Which paths to skip. */
+        private final IgnoreRules rules;
+
+        /** A task listing DIR, whose path is PREFIX, skipping what RULES
+         *  ignore. */
+        Scan(File dir, String prefix, IgnoreRules rules) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.rules = rules;
+        }
+
+        @Override
+        protected List<String> compute() {
+            ArrayList<String> result = new ArrayList<>();
+            File[] children = this.dir.listFiles();
+            if (children == null) {
+                return result;
+            }
+            ArrayList<Scan> subtasks = new ArrayList<>();
+            for (File child : children) {
+                String path = this.prefix + child.getName();
+                if (Files.isDirectory(child.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                    if (!this.rules.ignored(path, true)) {
+                        Scan task = new Scan(child, path + "/", this.rules);
+                        task.fork();
+                        subtasks.add(task);
+                    }
+                } else if (child.isFile() && !this.rules.ignored(path, false)) {
+                    result.add(path);
+                }
+            }
+            for (Scan task : subtasks) {
+                result.addAll(task.join());
+            }
+            return result;
+        }
+    }
+
+}